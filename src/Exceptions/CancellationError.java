@@ -0,0 +1,26 @@
+package Exceptions;
+
+/**
+ * An error that aborts a compilation because it has been cancelled or because its deadline has passed. It is
+ * unchecked so that it can be thrown from anywhere the compilation runs, such as from an iterator or a traversal, and
+ * like a syntax error, it captures no stack trace.
+ */
+public class CancellationError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private final boolean isDeadlineExceeded;
+
+    public CancellationError(boolean isDeadlineExceeded) {
+        super(isDeadlineExceeded ? "The deadline of the compilation has passed" : "The compilation has been cancelled",
+                null, false, false);
+        this.isDeadlineExceeded = isDeadlineExceeded;
+    }
+
+    /**
+     * Determines if the compilation has been aborted because of its deadline rather than cancelled.
+     *
+     * @return true if the deadline has passed and false if the compilation has been cancelled.
+     */
+    public boolean isDeadlineExceeded() {
+        return isDeadlineExceeded;
+    }
+}
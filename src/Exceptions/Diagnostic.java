@@ -0,0 +1,29 @@
+package Exceptions;
+
+/**
+ * A syntax error that has been recovered from, described by its reason and its line. The message is only formatted
+ * when it is requested.
+ *
+ * @param reason the description of the error without its line.
+ * @param line   the line of the error.
+ */
+public record Diagnostic(String reason, int line) {
+    /**
+     * Creates the diagnostic of a syntax error.
+     *
+     * @param syntaxError the syntax error.
+     * @return the diagnostic of the error.
+     */
+    public static Diagnostic of(SyntaxError syntaxError) {
+        return new Diagnostic(syntaxError.getReason(), syntaxError.getLine());
+    }
+
+    /**
+     * Gets the message of the error, which is the same as the message of the syntax error.
+     *
+     * @return the message of the error.
+     */
+    public String getMessage() {
+        return reason + " on line " + line;
+    }
+}
@@ -1,7 +1,34 @@
 package Exceptions;
 
+/**
+ * A syntax error in the input. The error is described by its reason and its line, so no stack trace is captured, and
+ * its message is only formatted when it is requested.
+ */
 public class SyntaxError extends Exception {
+    private final String reason;
+    private final int line;
+
     public SyntaxError(String message, int line) {
-        super(message + " on line " + line);
+        super(null, null, false, false);
+        this.reason = message;
+        this.line = line;
+    }
+
+    @Override
+    public String getMessage() {
+        return reason + " on line " + line;
+    }
+
+    /**
+     * Gets the description of the error without its line.
+     *
+     * @return the description of the error.
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    public int getLine() {
+        return line;
     }
 }
@@ -0,0 +1,23 @@
+package Exceptions;
+
+/**
+ * A syntax error wrapped in an unchecked exception, so that it can be thrown where checked exceptions cannot, such as
+ * from an iterator.
+ */
+public class UncheckedSyntaxError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public UncheckedSyntaxError(SyntaxError cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    /**
+     * Gets the wrapped syntax error.
+     *
+     * @return the syntax error.
+     */
+    @Override
+    public SyntaxError getCause() {
+        return (SyntaxError) super.getCause();
+    }
+}
@@ -0,0 +1,186 @@
+package LexerSpace;
+
+import Utilities.ISourceText;
+import Utilities.NumberToken;
+import Utilities.Token;
+import Utilities.TokenType;
+
+/**
+ * An input buffer over characters that are all in memory. Since the characters stay in memory, tokens are created as
+ * slices of the characters and their text is copied on demand. Offsets and lines are those of the whole array, even
+ * if the buffer only covers a range of it. A buffer that is restarted on other inputs copies each input into the same
+ * array, so its tokens slice the input instead.
+ */
+class CharArrayBuffer extends InputBuffer implements ISourceText {
+    private char[] chars;
+    private int end;
+    // Number of characters of the input, which is less than the length of the array if the array is reused
+    private int length;
+    // Index of the next character
+    private int pos;
+    private int markPos = -1;
+    // Source of the text of the tokens, which is the input itself if the array is a reused copy of the input
+    private ISourceText text = this;
+
+    /**
+     * Creates a buffer over a range of a character array.
+     *
+     * @param chars the characters.
+     * @param start index of the first character in the range.
+     * @param end   index after the last character in the range.
+     */
+    public CharArrayBuffer(char[] chars, int start, int end) {
+        this.chars = chars;
+        this.pos = start;
+        this.end = end;
+        this.length = chars.length;
+    }
+
+    public CharArrayBuffer(char[] chars) {
+        this(chars, 0, chars.length);
+    }
+
+    /**
+     * Creates a buffer over a copy of a character sequence that can be restarted on other sequences afterward. The
+     * array that holds the copy is reused by every sequence, so the tokens take their text from the sequence itself.
+     *
+     * @param input the input.
+     */
+    public CharArrayBuffer(CharSequence input) {
+        this.chars = new char[input.length()];
+        load(input);
+    }
+
+    /**
+     * Determines if the buffer can be restarted on another input, that is, if it has been created over a character
+     * sequence.
+     *
+     * @return true if the buffer can be restarted and false otherwise.
+     */
+    public boolean isRestartable() {
+        return text != this;
+    }
+
+    /**
+     * Starts the buffer over another input, which is copied into the array of the buffer. The array only grows if the
+     * input does not fit in it.
+     *
+     * @param input the input.
+     * @throws IllegalStateException if the buffer has not been created over a character sequence.
+     */
+    public void restart(CharSequence input) {
+        if (text == this) {
+            throw new IllegalStateException("Cannot restart a buffer whose characters may be sliced by tokens");
+        }
+        load(input);
+    }
+
+    /**
+     * Copies an input into the array of the buffer and starts the buffer at its first character.
+     *
+     * @param input the input.
+     */
+    private void load(CharSequence input) {
+        String str = input.toString();
+        int len = str.length();
+        if (len > chars.length) {
+            chars = new char[Math.max(len, chars.length * 2)];
+        }
+        str.getChars(0, len, chars, 0);
+        end = len;
+        length = len;
+        pos = 0;
+        markPos = -1;
+        text = (offset, textLength) -> str.substring(offset, offset + textLength);
+        resetLines();
+    }
+
+    @Override
+    public short peek() {
+        if (pos == end) {
+            return EOS;
+        }
+        return (short) chars[pos];
+    }
+
+    @Override
+    public short read() {
+        short c = peek();
+        if (pos < end) {
+            ++pos;
+        }
+        return c;
+    }
+
+    @Override
+    public void skipSpaces() {
+        pos = CharScanner.getInstance().skipSpaces(chars, pos, end);
+    }
+
+    @Override
+    public int skipIdentifierPart(int hash) {
+        int from = pos;
+        pos = CharScanner.getInstance().skipIdentifierPart(chars, pos, end);
+        for (int i = from; i < pos; ++i) {
+            hash = 31 * hash + chars[i];
+        }
+        return hash;
+    }
+
+    @Override
+    public void mark() {
+        markPos = pos;
+    }
+
+    @Override
+    public int getMarkOffset() {
+        return markPos;
+    }
+
+    @Override
+    public int getOffset() {
+        return pos;
+    }
+
+    @Override
+    public String getMarkedText() {
+        return getText(markPos, pos - markPos);
+    }
+
+    @Override
+    public boolean markedTextEquals(String str) {
+        int len = pos - markPos;
+        if (len != str.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; ++i) {
+            if (chars[markPos + i] != str.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Token createMarkedToken(TokenType tokenType) {
+        return new Token(text, markPos, pos - markPos, tokenType);
+    }
+
+    @Override
+    public NumberToken createMarkedNumberToken(TokenType tokenType, long valueBits) {
+        return new NumberToken(text, markPos, pos - markPos, tokenType, valueBits);
+    }
+
+    @Override
+    protected void scanLines(int offset) {
+        int to = Math.min(offset, length);
+        if (to > lineTable.getScannedTo()) {
+            lineTable.scan(chars, lineTable.getScannedTo(), to);
+        }
+    }
+
+    @Override
+    public String getText(int offset, int length) {
+        return new String(chars, offset, length);
+    }
+}
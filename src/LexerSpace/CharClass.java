@@ -0,0 +1,71 @@
+package LexerSpace;
+
+/**
+ * Character classes used by the lexer. The classes of ASCII characters are looked up in a precomputed table and the
+ * classes of the other characters are computed on demand.
+ */
+final class CharClass {
+    public static final int SPACE = 1;
+    // A letter or '_'
+    public static final int ID_START = 2;
+    // A letter, a digit or '_'
+    public static final int ID_PART = 4;
+    public static final int DIGIT = 8;
+    // A character that can directly follow an identifier or a number
+    public static final int SPECIAL = 16;
+    // A space, ';' or the end of the stream
+    public static final int SEPARATOR = 32;
+    private static final String SPECIAL_CHARS = "()+-*/&|%<>=,.;:_";
+    private static final byte[] ASCII_CLASSES = new byte[128];
+
+    static {
+        for (int c = 0; c < ASCII_CLASSES.length; ++c) {
+            ASCII_CLASSES[c] = (byte) compute(c);
+        }
+    }
+
+    private CharClass() {
+    }
+
+    /**
+     * Computes the classes of a character.
+     *
+     * @param c the character.
+     * @return a combination of the classes of the character.
+     */
+    private static int compute(int c) {
+        int charClass = 0;
+        if (Character.isWhitespace(c)) {
+            charClass |= SPACE | SEPARATOR;
+        }
+        if (Character.isAlphabetic(c) || c == '_') {
+            charClass |= ID_START | ID_PART;
+        }
+        if (Character.isDigit(c)) {
+            charClass |= DIGIT | ID_PART;
+        }
+        if (SPECIAL_CHARS.indexOf(c) >= 0) {
+            charClass |= SPECIAL;
+        }
+        if (c == ';') {
+            charClass |= SEPARATOR;
+        }
+        return charClass;
+    }
+
+    /**
+     * Gets the classes of a character read from an input buffer.
+     *
+     * @param c the character or EOS.
+     * @return a combination of the classes of the character.
+     */
+    public static int of(short c) {
+        if (c >= 0 && c < ASCII_CLASSES.length) {
+            return ASCII_CLASSES[c];
+        }
+        if (c == InputBuffer.EOS) {
+            return SEPARATOR;
+        }
+        return compute(c);
+    }
+}
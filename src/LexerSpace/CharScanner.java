@@ -0,0 +1,85 @@
+package LexerSpace;
+
+/**
+ * Finds the end of runs of spaces and identifier characters in a character array. This scanner checks one character
+ * at a time, the vector scanner checks many characters at a time when the jdk.incubator.vector module is enabled.
+ * The vector scanner is an optional class that is compiled separately from the vector source directory by
+ * vector/build.sh, so the src tree compiles without the module.
+ */
+class CharScanner {
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final CharScanner INSTANCE = create();
+
+    CharScanner() {
+    }
+
+    /**
+     * Creates the vector scanner if the vector module is enabled and the class of the vector scanner has been
+     * compiled, and the scalar scanner otherwise.
+     *
+     * @return a scanner.
+     */
+    private static CharScanner create() {
+        CharScanner vectorScanner = createVectorScanner();
+        return vectorScanner != null ? vectorScanner : new CharScanner();
+    }
+
+    /**
+     * Creates the vector scanner. The vector scanner is loaded by name so that it is never linked when the module is
+     * missing.
+     *
+     * @return the vector scanner, or null if the vector module is not enabled or the class of the vector scanner has
+     * not been compiled.
+     */
+    static CharScanner createVectorScanner() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                return (CharScanner) Class.forName(CharScanner.class.getPackageName() + ".VectorCharScanner")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // The caller falls back to the scalar scanner
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the fastest scanner available.
+     *
+     * @return a scanner.
+     */
+    public static CharScanner getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Skips the spaces in a range of characters.
+     *
+     * @param chars the characters.
+     * @param from  index of the first character in the range.
+     * @param to    index after the last character in the range.
+     * @return the index of the first character that is not a space or to if there is none.
+     */
+    public int skipSpaces(char[] chars, int from, int to) {
+        while (from < to && (CharClass.of((short) chars[from]) & CharClass.SPACE) != 0) {
+            ++from;
+        }
+        return from;
+    }
+
+    /**
+     * Skips the characters that can be part of an identifier, that is, letters, digits and '_', in a range of
+     * characters.
+     *
+     * @param chars the characters.
+     * @param from  index of the first character in the range.
+     * @param to    index after the last character in the range.
+     * @return the index of the first character that cannot be part of an identifier or to if there is none.
+     */
+    public int skipIdentifierPart(char[] chars, int from, int to) {
+        while (from < to && (CharClass.of((short) chars[from]) & CharClass.ID_PART) != 0) {
+            ++from;
+        }
+        return from;
+    }
+}
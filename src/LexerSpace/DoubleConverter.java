@@ -0,0 +1,127 @@
+package LexerSpace;
+
+import java.math.BigInteger;
+
+/**
+ * Converts a decimal significand and a power of ten to the nearest double with the Eisel-Lemire algorithm. The
+ * significand is multiplied by a 128-bit truncated approximation of the power of five, and the result is rejected
+ * when the truncation may have changed the rounding, in which case the caller has to fall back to an exact method.
+ */
+final class DoubleConverter {
+    private static final int SMALLEST_POWER = -342;
+    private static final int LARGEST_POWER = 308;
+    // Powers of ten that are exact doubles
+    private static final double[] EXACT_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    // The high and the low 64 bits of the 128-bit approximations of the powers of five from SMALLEST_POWER
+    private static final long[] POWERS_OF_FIVE_HIGH = new long[LARGEST_POWER - SMALLEST_POWER + 1];
+    private static final long[] POWERS_OF_FIVE_LOW = new long[LARGEST_POWER - SMALLEST_POWER + 1];
+
+    static {
+        BigInteger five = BigInteger.valueOf(5);
+        BigInteger mask64 = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        for (int q = SMALLEST_POWER; q <= LARGEST_POWER; ++q) {
+            BigInteger approximation;
+            if (q < 0) {
+                // 2^b / 5^-q is rounded up so that the approximation is never below the exact value
+                BigInteger power = five.pow(-q);
+                int z = power.bitLength();
+                int b = q >= -27 ? z + 127 : 2 * z + 128;
+                approximation = BigInteger.ONE.shiftLeft(b).divide(power).add(BigInteger.ONE);
+                if (approximation.bitLength() > 128) {
+                    approximation = approximation.shiftRight(approximation.bitLength() - 128);
+                }
+            } else {
+                // 5^q is truncated or shifted so that its most significant bit is the 128th bit
+                approximation = five.pow(q);
+                int shift = approximation.bitLength() - 128;
+                approximation = shift > 0 ? approximation.shiftRight(shift) : approximation.shiftLeft(-shift);
+            }
+            POWERS_OF_FIVE_HIGH[q - SMALLEST_POWER] = approximation.shiftRight(64).longValue();
+            POWERS_OF_FIVE_LOW[q - SMALLEST_POWER] = approximation.and(mask64).longValue();
+        }
+    }
+
+    private DoubleConverter() {
+    }
+
+    /**
+     * Gets the high 64 bits of the unsigned product of two 64-bit integers.
+     *
+     * @param a the first integer.
+     * @param b the second integer.
+     * @return the high 64 bits of the product.
+     */
+    private static long unsignedMultiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + (a >> 63 & b) + (b >> 63 & a);
+    }
+
+    /**
+     * Converts significand * 10^power to the nearest double.
+     *
+     * @param significand a significand, read as an unsigned integer.
+     * @param power       the power of ten.
+     * @return the nearest double or NaN if the value cannot be converted without an exact method.
+     */
+    public static double toDouble(long significand, int power) {
+        if (significand == 0 || power < SMALLEST_POWER) {
+            return 0.0;
+        }
+        if (power > LARGEST_POWER) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // Both the significand and the power of ten are exact doubles, so one operation rounds correctly
+        if (significand >= 0 && significand <= 1L << 53 && power >= -22 && power <= 22) {
+            double value = significand;
+            return power < 0 ? value / EXACT_POWERS_OF_TEN[-power] : value * EXACT_POWERS_OF_TEN[power];
+        }
+
+        // The binary exponent of the result is about power * log2(10) + 1024 + 63
+        long exponent = ((152170L + 65536L) * power >> 16) + 1024 + 63;
+        int leadingZeros = Long.numberOfLeadingZeros(significand);
+        long shiftedSignificand = significand << leadingZeros;
+
+        long factorHigh = POWERS_OF_FIVE_HIGH[power - SMALLEST_POWER];
+        long lower = shiftedSignificand * factorHigh;
+        long upper = unsignedMultiplyHigh(shiftedSignificand, factorHigh);
+        // If the product is close to a rounding boundary, the low bits of the power of five are needed
+        if ((upper & 0x1FF) == 0x1FF && Long.compareUnsigned(lower + shiftedSignificand, lower) < 0) {
+            long factorLow = POWERS_OF_FIVE_LOW[power - SMALLEST_POWER];
+            long productLow = shiftedSignificand * factorLow;
+            long productMiddle = lower + unsignedMultiplyHigh(shiftedSignificand, factorLow);
+            long productHigh = upper;
+            if (Long.compareUnsigned(productMiddle, lower) < 0) {
+                ++productHigh;
+            }
+            if (productMiddle + 1 == 0 && (productHigh & 0x1FF) == 0x1FF &&
+                    Long.compareUnsigned(productLow + shiftedSignificand, productLow) < 0) {
+                return Double.NaN;
+            }
+            upper = productHigh;
+            lower = productMiddle;
+        }
+
+        long upperBit = upper >>> 63;
+        long mantissa = upper >>> (upperBit + 9);
+        leadingZeros += (int) (1 ^ upperBit);
+        // The product may be exactly halfway between two doubles, which the approximation cannot tell apart
+        if ((upper & 0x1FF) == 0x1FF || (upper & 0x1FF) == 0 && (mantissa & 3) == 1) {
+            return Double.NaN;
+        }
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if (mantissa >= 1L << 53) {
+            mantissa = 1L << 52;
+            --leadingZeros;
+        }
+        mantissa &= ~(1L << 52);
+        long realExponent = exponent - leadingZeros;
+        // Subnormal and infinite results are left to the exact method
+        if (realExponent < 1 || realExponent > 2046) {
+            return Double.NaN;
+        }
+        return Double.longBitsToDouble(mantissa | realExponent << 52);
+    }
+}
@@ -0,0 +1,80 @@
+package LexerSpace;
+
+import Exceptions.SyntaxError;
+import Utilities.Token;
+import Utilities.TokenType;
+
+import java.io.IOException;
+
+public interface ITokenSource {
+    /**
+     * Gets the next token.
+     *
+     * @return a token if one exists and null otherwise.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    Token getNextToken() throws SyntaxError, IOException;
+
+    /**
+     * Gets a token ahead without consuming it. peek(0) is the token that the next call to getNextToken returns, peek(1)
+     * the one after it and so on.
+     *
+     * @param k the number of tokens to look past.
+     * @return the token if one exists and null otherwise.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    Token peek(int k) throws SyntaxError, IOException;
+
+    /**
+     * Marks the position of the next token so that a call to reset returns to it. Tokens returned after the mark are
+     * kept until the mark is released by reset or by another mark.
+     */
+    void mark();
+
+    /**
+     * Returns to the position of the last mark so that the tokens returned since the mark are returned again, and
+     * releases the mark.
+     *
+     * @throws IllegalStateException if there is no mark.
+     */
+    void reset();
+
+    /**
+     * Skips the tokens up to and including the next ';', so that a parser can resume at the next statement after a
+     * syntax error. By default, the tokens are consumed one by one, so an invalid token cannot be skipped.
+     *
+     * @throws SyntaxError if there is an invalid token that cannot be skipped.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    default void skipStatement() throws SyntaxError, IOException {
+        Token token;
+        do {
+            token = getNextToken();
+        } while (token != null && token.getType() != TokenType.SEMICOLON);
+    }
+
+    /**
+     * Allows the source to discard what it keeps to find the lines of the tokens before the last returned token, so
+     * that a long source can be consumed in bounded memory. getCurrLine still returns the line of the last returned
+     * token afterward. By default, nothing is discarded.
+     */
+    default void releaseLines() {
+    }
+
+    /**
+     * Gets the offset in the source of the last token returned by getNextToken. A keyword, a type or an operator can be
+     * returned as its shared token, which does not hold the offset of its occurrence.
+     *
+     * @return the offset of the last returned token or -1 if no token has been returned.
+     */
+    int getTokenOffset();
+
+    /**
+     * Gets the current line in the source.
+     *
+     * @return the current line in the source.
+     */
+    int getCurrLine();
+}
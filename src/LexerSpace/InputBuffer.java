@@ -0,0 +1,159 @@
+package LexerSpace;
+
+import Utilities.NumberToken;
+import Utilities.Token;
+import Utilities.TokenType;
+
+import java.io.IOException;
+
+/**
+ * A source of characters consumed by the lexer.
+ */
+abstract class InputBuffer {
+    public static final short EOS = -1;
+    // Starts of the lines that have been scanned so far
+    protected final LineTable lineTable = new LineTable();
+
+    /**
+     * Gets the next character without consuming it.
+     *
+     * @return the next character or EOS if the end of the input has been reached.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    public abstract short peek() throws IOException;
+
+    /**
+     * Consumes the next character.
+     *
+     * @return the consumed character or EOS if the end of the input has been reached.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    public abstract short read() throws IOException;
+
+    /**
+     * Consumes the characters as long as they are spaces.
+     *
+     * @throws IOException if the read operation causes an IO error.
+     */
+    public void skipSpaces() throws IOException {
+        while ((CharClass.of(peek()) & CharClass.SPACE) != 0) {
+            read();
+        }
+    }
+
+    /**
+     * Consumes the characters as long as they can be part of an identifier, and adds them to the hash code of the
+     * identifier being read.
+     *
+     * @param hash the hash code of the characters of the identifier read so far, as computed by String.hashCode.
+     * @return the hash code of the characters of the identifier including the consumed characters.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    public int skipIdentifierPart(int hash) throws IOException {
+        while ((CharClass.of(peek()) & CharClass.ID_PART) != 0) {
+            hash = 31 * hash + (char) read();
+        }
+        return hash;
+    }
+
+    /**
+     * Marks the next character as the start of a token. The characters consumed after the mark are kept by the buffer
+     * until the next mark so that the token's text can be retrieved without copying each character as it is read.
+     */
+    public abstract void mark();
+
+    /**
+     * Gets the offset of the last mark in the input.
+     *
+     * @return the offset of the last mark.
+     */
+    public abstract int getMarkOffset();
+
+    /**
+     * Gets the offset of the next character in the input.
+     *
+     * @return the offset of the next character.
+     */
+    public abstract int getOffset();
+
+    /**
+     * Gets a copy of the text consumed since the last mark.
+     *
+     * @return the text consumed since the last mark.
+     */
+    public abstract String getMarkedText();
+
+    /**
+     * Determines if the text consumed since the last mark is equal to a string without copying the text.
+     *
+     * @param str the string to compare with.
+     * @return true if the marked text is equal to the string and false otherwise.
+     */
+    public abstract boolean markedTextEquals(String str);
+
+    /**
+     * Scans the input for line breaks up to an offset, or up to where the input has been read if the offset is beyond.
+     *
+     * @param offset the offset up to which the input is scanned.
+     */
+    protected abstract void scanLines(int offset);
+
+    /**
+     * Gets the line of an offset in the input. The lines are only scanned when they are requested.
+     *
+     * @param offset the offset.
+     * @return the line, starting at 1.
+     */
+    public int getLine(int offset) {
+        scanLines(offset);
+        return lineTable.getLine(offset);
+    }
+
+    /**
+     * Gets the column of an offset in the input, that is, the number of characters from the start of the line.
+     *
+     * @param offset the offset.
+     * @return the column, starting at 1.
+     */
+    public int getColumn(int offset) {
+        return offset - lineTable.getLineStart(getLine(offset)) + 1;
+    }
+
+    /**
+     * Forgets the lines that have been scanned, for a buffer that starts over another input.
+     */
+    protected void resetLines() {
+        lineTable.clear();
+    }
+
+    /**
+     * Discards the positions of the lines that end before an offset, which can then no longer be requested.
+     *
+     * @param offset the smallest offset whose line can still be requested.
+     */
+    public void discardLinesBefore(int offset) {
+        lineTable.discardBefore(offset);
+    }
+
+    /**
+     * Creates a token that holds the text consumed since the last mark. The text is copied by default, buffers over
+     * an input that stays in memory may instead create a token that slices the input.
+     *
+     * @param tokenType type of the token.
+     * @return a token that holds the marked text.
+     */
+    public Token createMarkedToken(TokenType tokenType) {
+        return new Token(getMarkedText(), tokenType, getMarkOffset());
+    }
+
+    /**
+     * Creates a numeric literal that holds the text consumed since the last mark, like createMarkedToken.
+     *
+     * @param tokenType type of the literal.
+     * @param valueBits the value of an INT literal or the bits of the value of a FLOAT literal.
+     * @return a numeric literal that holds the marked text.
+     */
+    public NumberToken createMarkedNumberToken(TokenType tokenType, long valueBits) {
+        return new NumberToken(getMarkedText(), tokenType, getMarkOffset(), valueBits);
+    }
+}
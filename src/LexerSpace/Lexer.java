@@ -1,397 +1,806 @@
 package LexerSpace;
 
+import Exceptions.CancellationError;
 import Exceptions.SyntaxError;
-import Symbols.SymbolInfo;
 import Symbols.SymbolTable;
+import Utilities.CancellationToken;
+import Utilities.NumberToken;
 import Utilities.Token;
 import Utilities.TokenType;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class Lexer implements ITokenSource {
+    private InputBuffer buffer;
+    private final SymbolTable symbolTable;
+    private final OperatorTrie operatorTrie;
+    // The shared token or the normalized text of the last scanned token if it has one
+    private Token fixedToken;
+    private String normalizedText;
+    private final static int EOS = -1;
+    // Flags that describe the parts of a decimal number
+    private final static int HAS_INT = 1;
+    private final static int HAS_DEC_POINT = 2;
+    private final static int HAS_FRACTION = 4;
+    // Number of significant digits that always fit in an unsigned long
+    private final static int MAX_SIGNIFICANT_DIGITS = 19;
+    // Bound of the exponents, beyond which the value of every literal is either 0 or infinity
+    private final static int MAX_EXPONENT = 1_000_000;
+    // The value of the last scanned numeric literal is computed as it is scanned from its first significant digits,
+    // the power of ten they are scaled by, whether non-zero digits have been dropped and its exponent
+    private long significand;
+    private int numSignificantDigits;
+    private int decimalExponent;
+    private boolean isTruncated;
+    private int exponent;
+    private boolean hasFractionalExponent;
+    private long numberBits;
+    private final static int INIT_LOOKAHEAD = 8;
+    // Tokens that have been scanned ahead, and the tokens returned since the mark, the next token is at lookaheadPos
+    private Token[] lookahead = new Token[INIT_LOOKAHEAD];
+    // Offsets of the tokens in the lookahead buffer, since shared tokens do not hold their own
+    private int[] lookaheadOffsets = new int[INIT_LOOKAHEAD];
+    private int lookaheadPos = 0;
+    private int lookaheadEnd = 0;
+    // Index in the lookahead buffer of the token at the mark, or -1 if there is no mark
+    private int markPos = -1;
+    // Offset of the last token that has been returned, or -1 if no token has been returned
+    private int currOffset = -1;
+    private CancellationToken cancellationToken = CancellationToken.NONE;
+    // Number of tokens, or characters skipped by skipStatement, until the cancellation token is checked
+    private int numUntilCancellationCheck = CancellationToken.CHECK_INTERVAL;
 
-public class Lexer {
-    private static class Buffer {
-        public final StringBuilder mainBuffer = new StringBuilder();
-        public final BufferedReader reader;
-        public int currLine = 1;
+    public Lexer(BufferedReader reader) {
+        this(new ReaderBuffer(reader));
+    }
 
-        public Buffer(BufferedReader reader) {
-            this.reader = reader;
-        }
+    /**
+     * Creates a lexer that scans a UTF-8 encoded file directly from a memory mapping of the file instead of copying
+     * it through a reader.
+     *
+     * @param path path to the file to be scanned.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public Lexer(Path path) throws IOException {
+        this(Utf8Buffer.map(path));
+    }
 
-        public short peek() throws IOException {
-            if (mainBuffer.isEmpty()) {
-                mainBuffer.append((char) reader.read());
-            }
-            return (short) mainBuffer.charAt(0);
-        }
+    /**
+     * Creates a lexer that scans UTF-8 encoded bytes without decoding them through a reader. ASCII characters are
+     * scanned directly from the bytes, and multibyte sequences are only decoded where they appear. The tokens are the
+     * same as the tokens of a lexer that reads the decoded text.
+     *
+     * @param bytes the UTF-8 encoded input.
+     */
+    public Lexer(byte[] bytes) {
+        this(new Utf8Buffer(bytes));
+    }
 
-        public short read() throws IOException {
-            short c = peek();
-            mainBuffer.deleteCharAt(0);
-            return c;
-        }
+    /**
+     * Creates a lexer that scans the remaining UTF-8 encoded bytes of a byte buffer without decoding them through a
+     * reader. The position of the byte buffer is left unchanged.
+     *
+     * @param bytes the UTF-8 encoded input.
+     */
+    public Lexer(ByteBuffer bytes) {
+        this(new Utf8Buffer(bytes));
+    }
 
-        public void putBack(String str) {
-            if (str != null && !str.isEmpty()) {
-                mainBuffer.insert(0, str);
-            }
-        }
+    /**
+     * Creates a lexer over a character sequence that can be restarted on other sequences afterward, so that many small
+     * inputs can be lexed by the same lexer. The sequence must not change while its tokens are in use.
+     *
+     * @param input the input.
+     */
+    public Lexer(CharSequence input) {
+        this(new CharArrayBuffer(input));
     }
 
-    private final Buffer buffer;
-    private final static String SPECIAL_CHARS = "()+-*/&|%<>=,.;:_";
-    private final static int EOS = -1;
+    Lexer(InputBuffer buffer) {
+        this.buffer = buffer;
+        this.symbolTable = SymbolTable.getInstance();
+        this.operatorTrie = OperatorTrie.of(symbolTable);
+    }
 
-    public Lexer(BufferedReader reader) {
-        this.buffer = new Buffer(reader);
+    /**
+     * Sets the token through which lexing is cancelled. The token is checked as the tokens are scanned.
+     *
+     * @param cancellationToken the cancellation token.
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Checks the cancellation token once every CHECK_INTERVAL calls.
+     *
+     * @throws CancellationError if the token has tripped.
+     */
+    private void checkCancellation() {
+        if (--numUntilCancellationCheck == 0) {
+            numUntilCancellationCheck = CancellationToken.CHECK_INTERVAL;
+            cancellationToken.check();
+        }
     }
 
     /**
-     * Get the current line in the stream.
+     * Gets the current line in the stream, which is the line of the last token that has been returned.
      *
      * @return the current line in the stream.
      */
+    @Override
     public int getCurrLine() {
-        return buffer.currLine;
+        return currOffset >= 0 ? buffer.getLine(currOffset) : 1;
     }
 
-    public void putBack(String str) {
-        buffer.putBack(str);
+    /**
+     * Gets the line of an offset in the input, such as the offset of a token. The lines of the input are only
+     * scanned when a line is requested, up to the requested offset.
+     *
+     * @param offset the offset.
+     * @return the line, starting at 1.
+     */
+    public int getLine(int offset) {
+        return buffer.getLine(offset);
     }
 
     /**
-     * Skips the spaces until a non-space character is encountered.
+     * Gets the column of an offset in the input, such as the offset of a token.
      *
+     * @param offset the offset.
+     * @return the column, starting at 1.
+     */
+    public int getColumn(int offset) {
+        return buffer.getColumn(offset);
+    }
+
+    /**
+     * Discards the lines before the last returned token and before the token at the mark, whose lines getLine and
+     * getColumn can then no longer return.
+     */
+    @Override
+    public void releaseLines() {
+        int offset = currOffset;
+        if (markPos >= 0 && markPos < lookaheadEnd) {
+            offset = Math.min(offset, lookaheadOffsets[markPos]);
+        }
+        if (offset >= 0) {
+            releaseLinesBefore(offset);
+        }
+    }
+
+    /**
+     * Discards the lines before an offset, whose lines getLine and getColumn can then no longer return.
+     *
+     * @param offset the smallest offset whose line can still be requested.
+     */
+    void releaseLinesBefore(int offset) {
+        buffer.discardLinesBefore(offset);
+    }
+
+    /**
+     * Gets the line of the token being scanned, which is where a syntax error of the lexer is.
+     *
+     * @return the line of the token being scanned.
+     */
+    private int getMarkLine() {
+        return buffer.getLine(buffer.getMarkOffset());
+    }
+
+    /**
+     * Gets a token ahead without consuming it. The tokens up to the requested one are scanned and kept in the
+     * lookahead buffer, from which getNextToken returns them afterward.
+     *
+     * @param k the number of tokens to look past.
+     * @return the token if one exists and null otherwise.
+     * @throws SyntaxError if there is a syntax error.
      * @throws IOException if the read operation causes an IO error.
      */
-    private void skipSpaces() throws IOException {
-        short c;
-        while ((c = buffer.peek()) != EOS && isSpace(c)) {
-            buffer.read();
+    @Override
+    public Token peek(int k) throws SyntaxError, IOException {
+        if (k < 0) {
+            throw new IllegalArgumentException("Cannot peek at a token behind the next one");
+        }
+        while (lookaheadEnd - lookaheadPos <= k) {
+            Token token = createNextToken();
+            if (token == null) {
+                return null;
+            }
+            addLookahead(token, buffer.getMarkOffset());
         }
+        return lookahead[lookaheadPos + k];
     }
 
     /**
-     * Determines if the character is a space.
+     * Marks the position of the next token. The tokens returned after the mark are kept in the lookahead buffer so
+     * that reset can return them again without scanning the input again.
+     */
+    @Override
+    public void mark() {
+        markPos = lookaheadPos;
+    }
+
+    /**
+     * Returns to the position of the last mark and releases the mark.
      *
-     * @param c the character to be checked.
-     * @return true if the character is a space and false otherwise.
+     * @throws IllegalStateException if there is no mark.
      */
-    private boolean isSpace(short c) {
-        return Character.isWhitespace(c);
+    @Override
+    public void reset() {
+        if (markPos < 0) {
+            throw new IllegalStateException("Cannot reset the lexer without a mark");
+        }
+        lookaheadPos = markPos;
+        markPos = -1;
     }
 
     /**
-     * Determines if the character is an alphanumeric or an underscore.
+     * Starts the lexer over another input as if it were a new lexer. Unlike reset, which returns to the marked token
+     * of the same input, this drops the mark. The buffers of the lexer are reused, and the tokens returned before keep
+     * their text.
      *
-     * @param c the character to be checked.
-     * @return true if the character is an alphanumeric or an underscore and false otherwise.
+     * @param input the input, which must not change while its tokens are in use.
      */
-    private boolean isAlnumUnderscore(short c) {
-        return Character.isAlphabetic(c) || Character.isDigit(c) || c == '_';
+    public void restart(CharSequence input) {
+        if (buffer instanceof CharArrayBuffer charBuffer && charBuffer.isRestartable()) {
+            charBuffer.restart(input);
+        } else {
+            buffer = new CharArrayBuffer(input);
+        }
+        fixedToken = null;
+        normalizedText = null;
+        Arrays.fill(lookahead, 0, lookaheadEnd, null);
+        lookaheadPos = 0;
+        lookaheadEnd = 0;
+        markPos = -1;
+        currOffset = -1;
     }
 
     /**
-     * Determines if the character is a valid special character.
+     * Skips the tokens up to and including the next ';'. Since no token contains ';', once the tokens in the lookahead
+     * buffer have been skipped, the characters up to the next ';' are skipped without being scanned, so that an invalid
+     * token is skipped as well.
      *
-     * @param c the character to be checked.
-     * @return true if the character is a valid special character and false otherwise.
+     * @throws IOException if the read operation causes an IO error.
+     * @throws CancellationError if the cancellation token has tripped.
      */
-    private boolean isSpecialChar(short c) {
-        return SPECIAL_CHARS.indexOf(c) >= 0;
+    @Override
+    public void skipStatement() throws IOException {
+        while (lookaheadPos < lookaheadEnd) {
+            Token token = lookahead[lookaheadPos];
+            getNextTokenAhead();
+            if (token.getType() == TokenType.SEMICOLON) {
+                return;
+            }
+        }
+        short c;
+        do {
+            checkCancellation();
+            // The buffer does not need to keep the skipped characters
+            buffer.mark();
+            currOffset = buffer.getOffset();
+            c = buffer.read();
+        } while (c != EOS && c != ';');
     }
 
     /**
-     * Determines if the character is a valid separator.
+     * Appends a token to the lookahead buffer. When the buffer is full, the tokens that are neither ahead nor after
+     * the mark are dropped, and the buffer only grows if the remaining tokens fill more than half of it.
      *
-     * @param c the character to be checked.
-     * @return true if the character is a valid separator and false otherwise.
+     * @param token  the token to be appended.
+     * @param offset the offset of the token in the input.
      */
-    private boolean isSeparator(short c) {
-        return c == EOS || isSpace(c) || c == ';';
+    private void addLookahead(Token token, int offset) {
+        if (lookaheadEnd == lookahead.length) {
+            int keepFrom = markPos >= 0 ? markPos : lookaheadPos;
+            int numKept = lookaheadEnd - keepFrom;
+            Token[] tokens = lookahead;
+            int[] offsets = lookaheadOffsets;
+            if (numKept > lookahead.length / 2) {
+                tokens = new Token[lookahead.length * 2];
+                offsets = new int[lookahead.length * 2];
+            }
+            System.arraycopy(lookahead, keepFrom, tokens, 0, numKept);
+            System.arraycopy(lookaheadOffsets, keepFrom, offsets, 0, numKept);
+            Arrays.fill(tokens, numKept, lookaheadEnd, null);
+            lookahead = tokens;
+            lookaheadOffsets = offsets;
+            lookaheadPos -= keepFrom;
+            lookaheadEnd = numKept;
+            if (markPos >= 0) {
+                markPos = 0;
+            }
+        }
+        lookahead[lookaheadEnd] = token;
+        lookaheadOffsets[lookaheadEnd++] = offset;
     }
 
     /**
-     * Gets the next token in the stream.
+     * Scans the next token in the stream without creating it. The scanned token is described by its type, its text in
+     * the buffer, which starts at the mark, and the shared token or the normalized text if the token has one.
      *
-     * @return a token if one exists and null otherwise.
+     * @return the type of the token if one exists and null otherwise.
      * @throws SyntaxError if there is a syntax error.
      * @throws IOException if the read operation causes an IO error.
+     * @throws CancellationError if the cancellation token has tripped.
      */
-    public Token getNextToken() throws SyntaxError, IOException {
-        skipSpaces();
+    TokenType scanNextToken() throws SyntaxError, IOException {
+        checkCancellation();
+        buffer.skipSpaces();
 
         if (buffer.peek() == EOS) {
             return null;
         }
 
-        Token token = getAlnumUnderscoreToken();
-        SymbolTable symbolTable = SymbolTable.getInstance();
+        buffer.mark();
+        fixedToken = null;
+        normalizedText = null;
+        // The class of the first character determines the kind of the token
+        short c = buffer.peek();
+        int charClass = CharClass.of(c);
+        if ((charClass & CharClass.ID_START) != 0) {
+            return scanAlnumUnderscore();
+        }
+        if ((charClass & CharClass.DIGIT) != 0 || c == '.') {
+            return scanScientificNumber();
+        }
+        TokenType tokenType = scanOperator();
+        if (tokenType != null) {
+            return tokenType;
+        }
+        throw new SyntaxError("Unable to get next token because of invalid syntax", getMarkLine());
+    }
+
+    /**
+     * Gets the offset of the last scanned token in the input.
+     *
+     * @return the offset of the last scanned token.
+     */
+    int getScannedOffset() {
+        return buffer.getMarkOffset();
+    }
+
+    /**
+     * Gets the length of the last scanned token in the input.
+     *
+     * @return the length of the last scanned token.
+     */
+    int getScannedLength() {
+        return buffer.getOffset() - buffer.getMarkOffset();
+    }
+
+    /**
+     * Gets the shared token of the last scanned token if it is a keyword, a type or an operator.
+     *
+     * @return the shared token or null if the token does not have a fixed text.
+     */
+    Token getFixedToken() {
+        return fixedToken;
+    }
+
+    /**
+     * Gets the value of the last scanned token if it is a numeric literal.
+     *
+     * @return the value of an INT literal or the bits of the value of a FLOAT literal.
+     */
+    long getNumberBits() {
+        return numberBits;
+    }
+
+    /**
+     * Gets the normalized text of the last scanned token if it is a numeric literal that has been normalized.
+     *
+     * @return the normalized text or null if the token's text is the same as in the input.
+     */
+    String getNormalizedText() {
+        return normalizedText;
+    }
 
+    /**
+     * Gets the next token in the stream, from the lookahead buffer if it has already been scanned.
+     *
+     * @return a token if one exists and null otherwise.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    @Override
+    public Token getNextToken() throws SyntaxError, IOException {
+        if (lookaheadPos < lookaheadEnd) {
+            return getNextTokenAhead();
+        }
+        Token token = createNextToken();
         if (token != null) {
-            // Check if the token is a keyword, if it is, change its token type
-            String tokenStr = token.getValue();
-            SymbolInfo info = symbolTable.getKeyword(tokenStr);
-            if (info != null) {
-                token.setType(info.getToken().getType());
-                return token;
+            currOffset = buffer.getMarkOffset();
+            if (markPos >= 0) {
+                addLookahead(token, currOffset);
+                ++lookaheadPos;
             }
-            // Check if the token is a type id, if it is, change its token type
-            info = symbolTable.getType(tokenStr);
-            if (info != null) {
-                token.setType(info.getToken().getType());
-                return token;
-            }
-            // Otherwise, keep it as an ID
-            return token;
         }
-        token = getScientificNumberToken();
-        if (token != null) {
-            return token;
+        return token;
+    }
+
+    /**
+     * Gets the offset in the input of the last token returned by getNextToken. Keywords, types and operators are
+     * returned as their shared tokens, which do not hold an offset, so their offsets are only known from here.
+     *
+     * @return the offset of the last returned token or -1 if no token has been returned.
+     */
+    @Override
+    public int getTokenOffset() {
+        return currOffset;
+    }
+
+    /**
+     * Gets the next token from the lookahead buffer, which must not be empty.
+     *
+     * @return the next token.
+     */
+    private Token getNextTokenAhead() {
+        currOffset = lookaheadOffsets[lookaheadPos];
+        Token token = lookahead[lookaheadPos++];
+        if (markPos < 0 && lookaheadPos == lookaheadEnd) {
+            // Nothing is ahead and no token is marked, so the buffer is emptied
+            Arrays.fill(lookahead, 0, lookaheadEnd, null);
+            lookaheadPos = 0;
+            lookaheadEnd = 0;
         }
-        token = getOperatorToken();
-        if (token != null) {
-            // Get the correct operator type using the symbol table
-            SymbolInfo info = symbolTable.getOperator(token.getValue());
-            if (info != null) {
-                token.setType(info.getToken().getType());
-                return token;
+        return token;
+    }
+
+    /**
+     * Scans the next token in the stream and creates it.
+     *
+     * @return a token if one exists and null otherwise.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     * @throws CancellationError if the cancellation token has tripped.
+     */
+    private Token createNextToken() throws SyntaxError, IOException {
+        TokenType tokenType = scanNextToken();
+        if (tokenType == null) {
+            return null;
+        }
+        if (fixedToken != null) {
+            // A keyword, a type or an operator is returned as its shared token, and its offset is kept by the lexer
+            return fixedToken;
+        }
+        if (tokenType == TokenType.INT || tokenType == TokenType.FLOAT) {
+            if (normalizedText != null) {
+                return new NumberToken(normalizedText, tokenType, buffer.getMarkOffset(), numberBits);
             }
-            return token;
+            return buffer.createMarkedNumberToken(tokenType, numberBits);
         }
-        throw new SyntaxError("Unable to get next token because of invalid syntax", getCurrLine());
+        return buffer.createMarkedToken(tokenType);
     }
 
     /**
-     * Reads alphanumeric and underscore characters into a string and stores it in a token.
+     * Reads alphanumeric and underscore characters. If the characters form a keyword or a type, the shared token of
+     * the keyword or the type is kept as the fixed token.
      *
-     * @return a token containing a string of alphanumeric and underscore characters.
+     * @return the type of the token if one has been read and null otherwise.
      * @throws IOException if the read operation causes an error.
      * @throws SyntaxError if there is an invalid character.
      */
-    private Token getAlnumUnderscoreToken() throws IOException, SyntaxError {
-        short c;
-
-        // Check if the first character is end of stream or a letter or '_'
-        if ((c = buffer.peek()) == EOS || (!Character.isAlphabetic(c) && c != '_')) {
-            return null;
+    private TokenType scanAlnumUnderscore() throws IOException, SyntaxError {
+        // The first character is a letter or '_'. The hash code of the word is computed as it is read so that it can be
+        // classified without creating a string.
+        int hash = buffer.skipIdentifierPart((char) buffer.read());
+
+        // The word must end with a separator or a valid special character
+        short c = buffer.peek();
+        if ((CharClass.of(c) & (CharClass.SEPARATOR | CharClass.SPECIAL)) == 0) {
+            throw new SyntaxError("Invalid character '" + (char) c + "' after '" + buffer.getMarkedText() + "'",
+                    getMarkLine());
         }
 
-        StringBuilder tokenStr = new StringBuilder();
-        boolean end = false;
-
-        // Consume the character from the stream until it is a separator or a valid special character
-        while (!isSeparator(c) && !end) {
-            if (isAlnumUnderscore(c)) {
-                tokenStr.append((char) c);
-                buffer.read();
-            } else if (isSpecialChar(c)) {
-                end = true;
-            } else {
-                throw new SyntaxError("Invalid character '" + c + "' after '" + tokenStr + "'", getCurrLine());
+        // Check if the token is a keyword or a type id
+        Token[] candidates = symbolTable.getReservedWords().getCandidates(hash);
+        if (candidates != null) {
+            for (Token candidate : candidates) {
+                if (buffer.markedTextEquals(candidate.getValue())) {
+                    fixedToken = candidate;
+                    return fixedToken.getType();
+                }
             }
-            c = buffer.peek();
         }
-
-        // The string cannot be empty
-        // Set the type to ID and check it later
-        return new Token(tokenStr.toString(), TokenType.ID);
+        // Otherwise, it is an ID
+        return TokenType.ID;
     }
 
     /**
-     * Reads a string and stores it in a new token if it matches the given string.
+     * Reads an operator by following the operator trie, and keeps the shared token of the operator as the fixed token
+     * if the operation succeeds. Like maximal munch, the operator is extended by the next character as long as the
+     * result is still an operator.
      *
-     * @param strToMatch    the string to match.
-     * @param readStrBuffer a string that has been read.
-     * @param tokenType     the type of the token to assign if one is present.
-     * @return a token containing the string if the operation succeeds and null otherwise.
-     * @throws IOException if there is an error while reading.
+     * @return the type of the operator if one has been read and null otherwise.
+     * @throws IOException if the read operation causes an error.
      */
-    private Token getStrToken(String strToMatch, StringBuilder readStrBuffer, TokenType tokenType)
-            throws IOException {
-        // Clears the buffer
-        readStrBuffer.setLength(0);
+    private TokenType scanOperator() throws IOException {
+        int node = OperatorTrie.ROOT;
+        int nextNode;
 
-        short c;
-        int i = 0;
-        boolean end = false;
-
-        while (i < strToMatch.length() && (c = buffer.peek()) != EOS && !end) {
-            end = (char) c != strToMatch.charAt(i);
-            if (!end) {
-                readStrBuffer.append((char) c);
-                ++i;
-                buffer.read();
-            }
+        while ((nextNode = operatorTrie.getChild(node, buffer.peek())) != OperatorTrie.ROOT &&
+                operatorTrie.getToken(nextNode) != null) {
+            buffer.read();
+            node = nextNode;
         }
 
-        if (!strToMatch.equals(readStrBuffer.toString())) {
+        if (node == OperatorTrie.ROOT) {
             return null;
         }
 
-        return new Token(strToMatch, tokenType);
+        fixedToken = operatorTrie.getToken(node);
+        return fixedToken.getType();
     }
 
     /**
-     * Reads an operator (can be multiple characters) and creates a token that stores the operator if the operation
-     * succeeds.
+     * Consumes a sequence of digits and adds them to the value of the numeric literal being scanned.
      *
-     * @return a token that stores the operator.
+     * @param isExponent whether the digits belong to the exponent.
+     * @param isFraction whether the digits follow a decimal point.
+     * @return true if at least one digit has been consumed and false otherwise.
      * @throws IOException if the read operation causes an error.
      */
-    private Token getOperatorToken() throws IOException {
+    private boolean skipDigits(boolean isExponent, boolean isFraction) throws IOException {
+        boolean found = false;
         short c;
-        StringBuilder tokenStr = new StringBuilder();
-        String tempStr;
-        boolean end = false;
-
-        while ((c = buffer.peek()) != EOS && !end) {
-            tempStr = tokenStr.toString() + (char) c;
-            // Find the operator corresponding to the string
-            end = !SymbolTable.getInstance().isOperator(tempStr);
-            if (!end) {
-                tokenStr.append((char) c);
-                buffer.read();
+
+        while ((CharClass.of(c = buffer.peek()) & CharClass.DIGIT) != 0) {
+            buffer.read();
+            found = true;
+            int digit = c >= '0' && c <= '9' ? c - '0' : Character.digit((char) c, 10);
+            if (isExponent) {
+                addExponentDigit(digit, isFraction);
+            } else {
+                addSignificandDigit(digit, isFraction);
             }
         }
 
-        if (tokenStr.isEmpty()) {
-            return null;
+        return found;
+    }
+
+    /**
+     * Adds a digit of the integer part or the fraction of a numeric literal to its significand. Only the first
+     * significant digits are kept, the following digits only scale the significand.
+     *
+     * @param digit      the digit.
+     * @param isFraction whether the digit follows a decimal point.
+     */
+    private void addSignificandDigit(int digit, boolean isFraction) {
+        if (numSignificantDigits == 0 && digit == 0) {
+            // A leading zero only scales the following digits if it belongs to the fraction
+            if (isFraction) {
+                --decimalExponent;
+            }
+        } else if (numSignificantDigits < MAX_SIGNIFICANT_DIGITS) {
+            significand = significand * 10 + digit;
+            ++numSignificantDigits;
+            if (isFraction) {
+                --decimalExponent;
+            }
+        } else {
+            isTruncated |= digit != 0;
+            if (!isFraction) {
+                ++decimalExponent;
+            }
         }
+    }
 
-        return new Token(tokenStr.toString(), TokenType.UNKNOWN);
+    /**
+     * Adds a digit to the exponent of a numeric literal.
+     *
+     * @param digit      the digit.
+     * @param isFraction whether the digit follows a decimal point in the exponent.
+     */
+    private void addExponentDigit(int digit, boolean isFraction) {
+        if (isFraction) {
+            hasFractionalExponent |= digit != 0;
+        } else if (exponent < MAX_EXPONENT) {
+            exponent = exponent * 10 + digit;
+        }
     }
 
     /**
-     * Reads a sequence of digits, adds them to a string and creates a token that contains
-     * the string if successful.
+     * Consumes a floating-point number made of an optional integer part, an optional decimal point and an optional
+     * fraction.
      *
-     * @return a token containing a sequence of digits.
+     * @param isExponent whether the number is the exponent of a numeric literal.
+     * @return a combination of HAS_INT, HAS_DEC_POINT and HAS_FRACTION that describes the parts that have been
+     * consumed.
      * @throws IOException if the read operation causes an error.
      */
-    private Token getDigitSeqToken() throws IOException {
-        short c;
-        StringBuilder tokenStr = new StringBuilder();
+    private int skipDecimal(boolean isExponent) throws IOException {
+        int parts = 0;
 
-        while ((c = buffer.peek()) != EOS && Character.isDigit(c)) {
-            tokenStr.append((char) c);
-            buffer.read();
+        // Reads the integer part
+        if (skipDigits(isExponent, false)) {
+            parts |= HAS_INT;
         }
 
-        if (tokenStr.isEmpty()) {
-            return null;
+        // Reads '.' and the fraction part
+        if (buffer.peek() == '.') {
+            buffer.read();
+            parts |= HAS_DEC_POINT;
+            if (skipDigits(isExponent, true)) {
+                parts |= HAS_FRACTION;
+            }
         }
 
-        return new Token(tokenStr.toString(), TokenType.INT);
+        return parts;
     }
 
     /**
-     * Reads a floating-point number and stores it in a new token if one exists.
+     * Determines if a floating-point number is written in its normalized form, that is, it has an integer part and
+     * it has a fraction if it has a decimal point.
      *
-     * @return a token containing the floating-point number.
-     * @throws SyntaxError if the numeric expression is invalid.
-     * @throws IOException if the read operation causes an error.
+     * @param parts the parts of the number.
+     * @return true if the number is normalized and false otherwise.
      */
-    private Token getNumberToken() throws SyntaxError, IOException {
-        StringBuilder tokenStr = new StringBuilder();
-        StringBuilder tempStr = new StringBuilder();
+    private static boolean isDecimalNormalized(int parts) {
+        return (parts & HAS_INT) != 0 && ((parts & HAS_DEC_POINT) == 0 || (parts & HAS_FRACTION) != 0);
+    }
 
-        // Reads the integer part
-        Token intToken = getDigitSeqToken();
-        boolean missingInt = intToken == null;
-        if (missingInt) {
-            tokenStr.append("0");
-        } else {
-            tokenStr.append(intToken.getValue());
+    /**
+     * Appends a floating-point number to a string and fills its missing integer part or fraction with '0'.
+     *
+     * @param normalized the string to append to.
+     * @param str        a string that contains the number.
+     * @param start      start index of the number in the string.
+     * @param end        end index of the number in the string.
+     */
+    private static void appendNormalizedDecimal(StringBuilder normalized, String str, int start, int end) {
+        if (start == end) {
+            return;
+        }
+        if (str.charAt(start) == '.') {
+            normalized.append('0');
         }
+        normalized.append(str, start, end);
+        if (str.charAt(end - 1) == '.') {
+            normalized.append('0');
+        }
+    }
 
-        // Reads '.'
-        Token decPointToken = getStrToken(".", tempStr, TokenType.UNKNOWN);
-        boolean missingDecPoint = decPointToken == null;
-        if (!missingDecPoint) {
-            tokenStr.append(".");
-        } else {
-            // Put back what has been read
-            buffer.putBack(tempStr.toString());
+    /**
+     * Normalizes a numeric literal by filling the missing integer parts and fractions with '0'.
+     *
+     * @param str the numeric literal as it is written in the stream.
+     * @return the normalized numeric literal.
+     */
+    private static String normalizeNumber(String str) {
+        StringBuilder normalized = new StringBuilder(str.length() + 4);
+        int expIndex = str.indexOf('e');
+
+        if (expIndex < 0) {
+            appendNormalizedDecimal(normalized, str, 0, str.length());
+            return normalized.toString();
         }
 
-        if (missingInt && missingDecPoint) {
-            return null;
+        appendNormalizedDecimal(normalized, str, 0, expIndex);
+        normalized.append('e');
+        int i = expIndex + 1;
+        if (i < str.length() && (str.charAt(i) == '+' || str.charAt(i) == '-')) {
+            normalized.append(str.charAt(i));
+            ++i;
         }
+        appendNormalizedDecimal(normalized, str, i, str.length());
+        return normalized.toString();
+    }
 
-        // Reads the fraction part if there is a decimal point
-        if (!missingDecPoint) {
-            Token fractionToken = getDigitSeqToken();
-            if (fractionToken == null) {
-                tokenStr.append("0");
-            } else {
-                tokenStr.append(fractionToken.getValue());
+    /**
+     * Finishes a numeric literal that has been consumed since the last mark and computes its value.
+     *
+     * @param tokenType          the type of the literal.
+     * @param normalized         whether the literal has been written in its normalized form.
+     * @param isExponentNegative whether the exponent of the literal is negative.
+     * @return the type of the literal.
+     * @throws SyntaxError if the literal is an integer that does not fit in a long.
+     */
+    private TokenType finishNumber(TokenType tokenType, boolean normalized, boolean isExponentNegative)
+            throws SyntaxError {
+        // A normalized literal can be taken as it is from the buffer
+        if (!normalized) {
+            normalizedText = normalizeNumber(buffer.getMarkedText());
+        }
+
+        if (tokenType == TokenType.INT) {
+            // The significand of an integer holds all its digits unless it has more than MAX_SIGNIFICANT_DIGITS
+            if (decimalExponent != 0 || significand < 0) {
+                throw new SyntaxError("Integer literal out of range", getMarkLine());
+            }
+            numberBits = significand;
+            return tokenType;
+        }
+
+        double value = Double.NaN;
+        if (!hasFractionalExponent) {
+            long power = (long) decimalExponent + (isExponentNegative ? -exponent : exponent);
+            int boundedPower = (int) Math.max(-MAX_EXPONENT, Math.min(MAX_EXPONENT, power));
+            value = DoubleConverter.toDouble(significand, boundedPower);
+            // If digits have been dropped, the value is only known if both bounds of the significand round the same
+            if (isTruncated && value != DoubleConverter.toDouble(significand + 1, boundedPower)) {
+                value = Double.NaN;
             }
         }
+        if (Double.isNaN(value)) {
+            value = computeDoubleExactly(isExponentNegative);
+        }
+        numberBits = Double.doubleToRawLongBits(value);
+        return tokenType;
+    }
 
-        TokenType tokenType = missingDecPoint ? TokenType.INT : TokenType.FLOAT;
-        return new Token(tokenStr.toString(), tokenType);
+    /**
+     * Computes the value of the last scanned FLOAT literal from its text. This is only needed for the rare literals
+     * that the fast conversion cannot round with certainty, and for literals with a fractional exponent, whose value
+     * is approximated.
+     *
+     * @param isExponentNegative whether the exponent of the literal is negative.
+     * @return the value of the literal.
+     */
+    private double computeDoubleExactly(boolean isExponentNegative) {
+        String text = normalizedText != null ? normalizedText : buffer.getMarkedText();
+        int expIndex = text.indexOf('e');
+        BigDecimal mantissa = new BigDecimal(expIndex < 0 ? text : text.substring(0, expIndex));
+        if (!hasFractionalExponent) {
+            return mantissa.scaleByPowerOfTen(isExponentNegative ? -exponent : exponent).doubleValue();
+        }
+        return mantissa.doubleValue() * Math.pow(10, new BigDecimal(text.substring(expIndex + 1)).doubleValue());
     }
 
     /**
-     * Reads a scientific floating-point number and stores it in a new token if one exists.
+     * Reads a scientific floating-point number if one exists.
      *
-     * @return a token containing the scientific floating-point number.
+     * @return the type of the number if one has been read and null otherwise.
      * @throws SyntaxError if the numeric expression is invalid.
      * @throws IOException if the read operation causes an error.
      */
-    private Token getScientificNumberToken() throws IOException, SyntaxError {
-        skipSpaces();
+    private TokenType scanScientificNumber() throws IOException, SyntaxError {
+        significand = 0;
+        numSignificantDigits = 0;
+        decimalExponent = 0;
+        isTruncated = false;
+        exponent = 0;
+        hasFractionalExponent = false;
 
         // Get a floating-point number
-        Token tempToken = getNumberToken();
-        if (tempToken == null) {
+        int parts = skipDecimal(false);
+        if (parts == 0) {
             return null;
         }
 
-        short c;
-        StringBuilder tokenStr = new StringBuilder();
-        StringBuilder tempStr = new StringBuilder();
-        TokenType tokenType = tempToken.getType();
+        short c = buffer.peek();
+        TokenType tokenType = (parts & HAS_DEC_POINT) != 0 ? TokenType.FLOAT : TokenType.INT;
+        boolean normalized = isDecimalNormalized(parts);
 
-        tokenStr.append(tempToken.getValue());
         // Get 'e'
-        tempToken = getStrToken("e", tempStr, TokenType.UNKNOWN);
-        if (tempToken == null) {
-            // Put back what has been read
-            buffer.putBack(tempStr.toString());
-            if ((c = buffer.peek()) == EOS || isSpace(c) || isSpecialChar(c) && c != '.') {
-                return new Token(tokenStr.toString(), tokenType);
+        if (c != 'e') {
+            int charClass = CharClass.of(c);
+            if (c == EOS || (charClass & CharClass.SPACE) != 0 || (charClass & CharClass.SPECIAL) != 0 && c != '.') {
+                return finishNumber(tokenType, normalized, false);
             } else {
-                throw new SyntaxError("Invalid numeric expression after '" + tokenStr + "'", getCurrLine());
+                throw new SyntaxError("Invalid numeric expression after '" +
+                        normalizeNumber(buffer.getMarkedText()) + "'", getMarkLine());
             }
         }
-        tokenStr.append("e");
+        buffer.read();
 
         // Get +/-
-        tempToken = getStrToken("+", tempStr, TokenType.UNKNOWN);
-        if (tempToken == null) {
-            // Put back what has been read
-            buffer.putBack(tempStr.toString());
-            // Reads '-' if '+' is not present
-            tempToken = getStrToken("-", tempStr, TokenType.UNKNOWN);
-            if (tempToken == null) {
-                // Put back what has been read
-                buffer.putBack(tempStr.toString());
-            } else {
-                tokenStr.append(tempToken.getValue());
-            }
-        } else {
-            tokenStr.append(tempToken.getValue());
+        c = buffer.peek();
+        if (c == '+' || c == '-') {
+            buffer.read();
         }
 
         // Get the exponent
-        tempToken = getNumberToken();
-        if (tempToken == null) {
-            throw new SyntaxError("Invalid numeric expression after '" + tokenStr + "'", getCurrLine());
+        parts = skipDecimal(true);
+        if (parts == 0) {
+            throw new SyntaxError("Invalid numeric expression after '" + normalizeNumber(buffer.getMarkedText()) + "'",
+                    getMarkLine());
         }
-        tokenStr.append(tempToken.getValue());
-        return new Token(tokenStr.toString(), TokenType.FLOAT);
+        return finishNumber(TokenType.FLOAT, normalized && isDecimalNormalized(parts), c == '-');
     }
 }
@@ -0,0 +1,124 @@
+package LexerSpace;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The offsets at which the lines of an input start. The input is scanned for line breaks only as far as positions are
+ * requested, so that lexing does not track lines, and the line of an offset is found by a binary search. The lines
+ * that are no longer needed can be discarded, so that a long input that is streamed keeps a bounded table.
+ */
+final class LineTable {
+    // lineStarts[i] is the offset of the line numDiscardedLines + i + 1
+    private int[] lineStarts = new int[64];
+    private int numLines = 1;
+    private int numDiscardedLines = 0;
+    // Offset up to which the input has been scanned
+    private int scannedTo = 0;
+
+    /**
+     * Gets the offset up to which the input has been scanned for line breaks.
+     *
+     * @return the offset after the last scanned character.
+     */
+    public int getScannedTo() {
+        return scannedTo;
+    }
+
+    /**
+     * Forgets every line so that the table can be used for another input. The array of the line starts is kept.
+     */
+    public void clear() {
+        lineStarts[0] = 0;
+        numLines = 1;
+        numDiscardedLines = 0;
+        scannedTo = 0;
+    }
+
+    /**
+     * Adds the line that starts at the given offset.
+     *
+     * @param offset offset of the first character of the line.
+     */
+    private void addLineStart(int offset) {
+        if (numLines == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, numLines * 2);
+        }
+        lineStarts[numLines++] = offset;
+    }
+
+    /**
+     * Scans characters that follow the scanned part of the input for line breaks.
+     *
+     * @param chars the characters.
+     * @param from  index of the character at the offset up to which the input has been scanned.
+     * @param to    index after the last character to be scanned.
+     */
+    public void scan(char[] chars, int from, int to) {
+        int base = scannedTo - from;
+        for (int i = from; i < to; ++i) {
+            if (chars[i] == '\n') {
+                addLineStart(base + i + 1);
+            }
+        }
+        scannedTo = Math.max(scannedTo, base + to);
+    }
+
+    /**
+     * Scans UTF-8 encoded bytes that follow the scanned part of the input for line breaks. The byte of '\n' is never
+     * part of a multibyte sequence, so the bytes are not decoded.
+     *
+     * @param bytes the bytes, indexed by their offsets.
+     * @param to    offset after the last byte to be scanned.
+     */
+    public void scan(ByteBuffer bytes, int to) {
+        for (int i = scannedTo; i < to; ++i) {
+            if (bytes.get(i) == '\n') {
+                addLineStart(i + 1);
+            }
+        }
+        scannedTo = Math.max(scannedTo, to);
+    }
+
+    /**
+     * Gets the line of an offset that has been scanned.
+     *
+     * @param offset the offset.
+     * @return the line, starting at 1.
+     */
+    public int getLine(int offset) {
+        int index = Arrays.binarySearch(lineStarts, 0, numLines, offset);
+        if (index == -1) {
+            throw new IllegalArgumentException("The line of the offset has been discarded");
+        }
+        // A missing offset is in the line that starts before its insertion point
+        return numDiscardedLines + (index >= 0 ? index + 1 : -index - 1);
+    }
+
+    /**
+     * Gets the offset at which a line starts.
+     *
+     * @param line the line, starting at 1.
+     * @return the offset of the first character of the line.
+     */
+    public int getLineStart(int line) {
+        return lineStarts[line - numDiscardedLines - 1];
+    }
+
+    /**
+     * Discards the lines that end before an offset. The lines are only removed from the table once they make up half
+     * of it, so that discarding takes an amortized constant time.
+     *
+     * @param offset the smallest offset whose line can still be requested.
+     */
+    public void discardBefore(int offset) {
+        int index = Arrays.binarySearch(lineStarts, 0, numLines, offset);
+        // Index of the line that contains the offset, as far as the input has been scanned
+        int lineIndex = index >= 0 ? index : -index - 2;
+        if (lineIndex > 0 && lineIndex >= numLines / 2) {
+            System.arraycopy(lineStarts, lineIndex, lineStarts, 0, numLines - lineIndex);
+            numLines -= lineIndex;
+            numDiscardedLines += lineIndex;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package LexerSpace;
+
+import Symbols.SymbolInfo;
+import Symbols.SymbolTable;
+import Symbols.SymbolType;
+import Utilities.Token;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A trie of the operators registered in the symbol table. Each node is a state reached after reading a prefix of an
+ * operator, and the transitions of all the nodes are stored in one flat array indexed by the node and the next ASCII
+ * character.
+ */
+class OperatorTrie {
+    public static final int ROOT = 0;
+    private static final int ALPHABET_SIZE = 128;
+    // children[node * ALPHABET_SIZE + c] is the child of the node for the character c, or ROOT if there is none
+    private int[] children = new int[ALPHABET_SIZE];
+    // The shared token of the operator that ends at each node, or null if the node's prefix is not an operator
+    private Token[] tokens = new Token[1];
+    private int numNodes = 1;
+    // The trie of the operators of the symbol table and the version of the operators it has been built from
+    private static volatile OperatorTrie sharedTrie;
+    private int operatorVersion;
+
+    public OperatorTrie(List<SymbolInfo> operators) {
+        for (SymbolInfo operator : operators) {
+            insert(operator.getToken());
+        }
+    }
+
+    /**
+     * Gets the trie of the operators in a symbol table. The trie is shared by all the lexers and is only built again
+     * after an operator has been registered.
+     *
+     * @param symbolTable the symbol table.
+     * @return the trie of the operators.
+     */
+    public static OperatorTrie of(SymbolTable symbolTable) {
+        OperatorTrie trie = sharedTrie;
+        int operatorVersion = symbolTable.getOperatorVersion();
+        if (trie == null || trie.operatorVersion != operatorVersion) {
+            trie = new OperatorTrie(symbolTable.getSymbols(SymbolType.OPERATOR));
+            trie.operatorVersion = operatorVersion;
+            sharedTrie = trie;
+        }
+        return trie;
+    }
+
+    /**
+     * Inserts an operator into the trie. Operators with non-ASCII characters are ignored.
+     *
+     * @param token the shared token of the operator.
+     */
+    private void insert(Token token) {
+        String opStr = token.getValue();
+        for (int i = 0; i < opStr.length(); ++i) {
+            if (opStr.charAt(i) >= ALPHABET_SIZE) {
+                return;
+            }
+        }
+
+        int node = ROOT;
+        for (int i = 0; i < opStr.length(); ++i) {
+            int index = node * ALPHABET_SIZE + opStr.charAt(i);
+            if (children[index] == ROOT) {
+                // The node is added first since adding it may replace the array of transitions
+                int child = addNode();
+                children[index] = child;
+            }
+            node = children[index];
+        }
+        tokens[node] = token;
+    }
+
+    /**
+     * Adds a node without any transition to the trie.
+     *
+     * @return the new node.
+     */
+    private int addNode() {
+        if (numNodes == tokens.length) {
+            tokens = Arrays.copyOf(tokens, numNodes * 2);
+            children = Arrays.copyOf(children, numNodes * 2 * ALPHABET_SIZE);
+        }
+        return numNodes++;
+    }
+
+    /**
+     * Gets the child of a node for a character.
+     *
+     * @param node the node.
+     * @param c    the character.
+     * @return the child node or ROOT if there is no transition for the character.
+     */
+    public int getChild(int node, short c) {
+        if (c < 0 || c >= ALPHABET_SIZE) {
+            return ROOT;
+        }
+        return children[node * ALPHABET_SIZE + c];
+    }
+
+    /**
+     * Gets the shared token of the operator that ends at a node.
+     *
+     * @param node the node.
+     * @return the shared token or null if the node does not end an operator.
+     */
+    public Token getToken(int node) {
+        return tokens[node];
+    }
+}
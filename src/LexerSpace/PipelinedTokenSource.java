@@ -0,0 +1,314 @@
+package LexerSpace;
+
+import Exceptions.SyntaxError;
+import Symbols.SymbolTable;
+import Utilities.Token;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A token source whose lexer runs ahead on its own thread. The lexer thread publishes the tokens in batches through a
+ * bounded queue, from which the thread that consumes the tokens, such as a parser's, takes them. When the queue is
+ * full, the lexer thread waits for the consumer, so that at most (capacity + 2) batches of tokens are held at a time
+ * besides the tokens kept for peek and mark.
+ *
+ * <p>The tokens and the syntax errors are the same as those of the lexer used on its own, and a syntax error or an IO
+ * error of the lexer is only thrown once the consumer reaches it. So is any other exception or error that stops the
+ * lexer thread, such as an OutOfMemoryError, so that the consumer never waits for a batch that will not come.
+ * Keywords, types and operators must not be registered in the symbol table while the lexer thread runs, but variables
+ * may be.
+ */
+public class PipelinedTokenSource implements ITokenSource, AutoCloseable {
+    public static final int DEFAULT_BATCH_SIZE = 512;
+    public static final int DEFAULT_CAPACITY = 16;
+    private static final int INIT_LOOKAHEAD = 8;
+    private final Lexer lexer;
+    private final int batchSize;
+    private final BlockingQueue<Batch> queue;
+    private Thread lexerThread;
+    private volatile boolean isClosed = false;
+    // Smallest offset whose line can still be requested, or -1 if no line has been released
+    private volatile int releasedOffset = -1;
+    // The batch being consumed and the index of its next token
+    private Batch batch;
+    private int batchPos = 0;
+    // Offset of the last token taken from the batches
+    private int takenOffset = -1;
+    // Tokens that have been taken from the batches for peek or after the mark, and their offsets, as in the lexer
+    private Token[] lookahead = new Token[INIT_LOOKAHEAD];
+    private int[] lookaheadOffsets = new int[INIT_LOOKAHEAD];
+    private int lookaheadPos = 0;
+    private int lookaheadEnd = 0;
+    private int markPos = -1;
+    // Offset of the last token that has been returned, or -1 if no token has been returned
+    private int currOffset = -1;
+
+    /**
+     * A batch of tokens and their offsets. The last batch ends the input, either at its end or at what the lexer thread
+     * threw.
+     */
+    private record Batch(Token[] tokens, int[] offsets, int size, boolean isLast, Throwable throwable) {
+    }
+
+    private PipelinedTokenSource(Lexer lexer, int batchSize, int capacity) {
+        if (batchSize <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("The batch size and the capacity must be positive");
+        }
+        this.lexer = lexer;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Starts lexing on a new thread with the default batch size and capacity.
+     *
+     * @param lexer the lexer, which must not be used by anything else afterward.
+     * @return a token source that returns the tokens of the lexer.
+     */
+    public static PipelinedTokenSource start(Lexer lexer) {
+        return start(lexer, DEFAULT_BATCH_SIZE, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Starts lexing on a new thread.
+     *
+     * @param lexer     the lexer, which must not be used by anything else afterward.
+     * @param batchSize the number of tokens in a batch.
+     * @param capacity  the number of batches that the queue holds before the lexer thread waits.
+     * @return a token source that returns the tokens of the lexer.
+     * @throws IllegalArgumentException if the batch size or the capacity is not positive.
+     */
+    public static PipelinedTokenSource start(Lexer lexer, int batchSize, int capacity) {
+        PipelinedTokenSource tokenSource = new PipelinedTokenSource(lexer, batchSize, capacity);
+        // The reserved words are set up here so that the lexer thread only reads them
+        SymbolTable.getInstance().getReservedWords();
+        tokenSource.lexerThread = new Thread(tokenSource::lexAll, "lexer");
+        tokenSource.lexerThread.setDaemon(true);
+        tokenSource.lexerThread.start();
+        return tokenSource;
+    }
+
+    /**
+     * Lexes the whole input on the lexer thread and publishes the tokens in batches.
+     */
+    private void lexAll() {
+        try {
+            boolean isLast = false;
+            while (!isLast) {
+                Batch batch = lexBatch();
+                isLast = batch.isLast();
+                queue.put(batch);
+            }
+        } catch (InterruptedException e) {
+            // The source has been closed, nothing takes the tokens anymore
+        }
+    }
+
+    /**
+     * Lexes the next batch of tokens. The lexer is only used while holding its lock so that the consumer can get the
+     * line of a token in between two batches.
+     *
+     * @return the batch, which is the last one if it ends the input or if anything has been thrown.
+     */
+    private Batch lexBatch() {
+        Token[] tokens = null;
+        int[] offsets = null;
+        int size = 0;
+        try {
+            tokens = new Token[batchSize];
+            offsets = new int[batchSize];
+            synchronized (lexer) {
+                int offset = releasedOffset;
+                if (offset >= 0) {
+                    lexer.releaseLinesBefore(offset);
+                }
+                Token token;
+                while (size < batchSize && (token = lexer.getNextToken()) != null) {
+                    tokens[size] = token;
+                    offsets[size++] = lexer.getTokenOffset();
+                }
+            }
+            return new Batch(tokens, offsets, size, size < batchSize, null);
+        } catch (Throwable e) {
+            // Errors are published too, since the consumer would otherwise wait for the next batch forever
+            return new Batch(tokens, offsets, size, true, e);
+        }
+    }
+
+    /**
+     * Takes the next token from the batches, waiting for the lexer thread if no batch is ready. The offset of the token
+     * is kept as takenOffset.
+     *
+     * @return a token if one exists and null otherwise.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error or the wait is interrupted.
+     */
+    private Token takeToken() throws SyntaxError, IOException {
+        while (batch == null || batchPos == batch.size()) {
+            if (batch != null && batch.isLast()) {
+                Throwable throwable = batch.throwable();
+                if (throwable instanceof SyntaxError syntaxError) {
+                    throw syntaxError;
+                }
+                if (throwable instanceof IOException ioException) {
+                    throw ioException;
+                }
+                if (throwable instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                if (throwable instanceof Error error) {
+                    throw error;
+                }
+                return null;
+            }
+            if (isClosed) {
+                throw new IllegalStateException("Cannot get a token from a closed token source");
+            }
+            try {
+                batch = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the lexer thread");
+            }
+            batchPos = 0;
+        }
+        takenOffset = batch.offsets()[batchPos];
+        return batch.tokens()[batchPos++];
+    }
+
+    @Override
+    public Token peek(int k) throws SyntaxError, IOException {
+        if (k < 0) {
+            throw new IllegalArgumentException("Cannot peek at a token behind the next one");
+        }
+        while (lookaheadEnd - lookaheadPos <= k) {
+            Token token = takeToken();
+            if (token == null) {
+                return null;
+            }
+            addLookahead(token, takenOffset);
+        }
+        return lookahead[lookaheadPos + k];
+    }
+
+    @Override
+    public void mark() {
+        markPos = lookaheadPos;
+    }
+
+    @Override
+    public void reset() {
+        if (markPos < 0) {
+            throw new IllegalStateException("Cannot reset the token source without a mark");
+        }
+        lookaheadPos = markPos;
+        markPos = -1;
+    }
+
+    /**
+     * Appends a token to the lookahead buffer, which is compacted or grown as the lexer's.
+     *
+     * @param token  the token to be appended.
+     * @param offset the offset of the token in the input.
+     */
+    private void addLookahead(Token token, int offset) {
+        if (lookaheadEnd == lookahead.length) {
+            int keepFrom = markPos >= 0 ? markPos : lookaheadPos;
+            int numKept = lookaheadEnd - keepFrom;
+            Token[] tokens = lookahead;
+            int[] offsets = lookaheadOffsets;
+            if (numKept > lookahead.length / 2) {
+                tokens = new Token[lookahead.length * 2];
+                offsets = new int[lookahead.length * 2];
+            }
+            System.arraycopy(lookahead, keepFrom, tokens, 0, numKept);
+            System.arraycopy(lookaheadOffsets, keepFrom, offsets, 0, numKept);
+            Arrays.fill(tokens, numKept, lookaheadEnd, null);
+            lookahead = tokens;
+            lookaheadOffsets = offsets;
+            lookaheadPos -= keepFrom;
+            lookaheadEnd = numKept;
+            if (markPos >= 0) {
+                markPos = 0;
+            }
+        }
+        lookahead[lookaheadEnd] = token;
+        lookaheadOffsets[lookaheadEnd++] = offset;
+    }
+
+    @Override
+    public Token getNextToken() throws SyntaxError, IOException {
+        Token token;
+        if (lookaheadPos < lookaheadEnd) {
+            currOffset = lookaheadOffsets[lookaheadPos];
+            token = lookahead[lookaheadPos++];
+            if (markPos < 0 && lookaheadPos == lookaheadEnd) {
+                Arrays.fill(lookahead, 0, lookaheadEnd, null);
+                lookaheadPos = 0;
+                lookaheadEnd = 0;
+            }
+        } else {
+            token = takeToken();
+            if (token != null) {
+                currOffset = takenOffset;
+                if (markPos >= 0) {
+                    addLookahead(token, currOffset);
+                    ++lookaheadPos;
+                }
+            }
+        }
+        return token;
+    }
+
+    @Override
+    public int getTokenOffset() {
+        return currOffset;
+    }
+
+    /**
+     * Gets the current line in the stream, which is the line of the last token that has been returned. The line is
+     * found by the lexer, so this waits for the lexer thread to finish its current batch.
+     *
+     * @return the current line in the stream.
+     */
+    @Override
+    public int getCurrLine() {
+        if (currOffset < 0) {
+            return 1;
+        }
+        synchronized (lexer) {
+            return lexer.getLine(currOffset);
+        }
+    }
+
+    /**
+     * Allows the lexer thread to discard the lines before the last returned token and before the token at the mark.
+     * The lines are discarded by the lexer thread before it lexes its next batch.
+     */
+    @Override
+    public void releaseLines() {
+        int offset = currOffset;
+        if (markPos >= 0 && markPos < lookaheadEnd) {
+            offset = Math.min(offset, lookaheadOffsets[markPos]);
+        }
+        releasedOffset = offset;
+    }
+
+    /**
+     * Stops the lexer thread if it is still running. The source cannot return the tokens that have not been taken from
+     * the queue afterward, and a consumer that waits for a batch is woken up and throws an IllegalStateException.
+     */
+    @Override
+    public void close() {
+        isClosed = true;
+        lexerThread.interrupt();
+        // The queue is emptied so that the last batch can be added even if the lexer thread has stopped
+        queue.clear();
+        queue.offer(new Batch(new Token[0], new int[0], 0, true,
+                new IllegalStateException("Cannot get a token from a closed token source")));
+    }
+}
@@ -0,0 +1,150 @@
+package LexerSpace;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * A sliding window over the input stream. Characters are pulled from the reader in bulk chunks into a char array,
+ * and the window is consumed by advancing an index, so that peek and read never shift the pending characters one by
+ * one.
+ */
+class ReaderBuffer extends InputBuffer {
+    private static final int CHUNK_SIZE = 8192;
+    public final BufferedReader reader;
+    // Pending characters are chars[pos, limit), characters in chars[mark, pos) belong to the current token
+    private char[] chars = new char[CHUNK_SIZE];
+    private int pos = 0;
+    private int limit = 0;
+    private int mark = -1;
+    // Offset of chars[0] in the stream
+    private int windowOffset = 0;
+    private boolean eos = false;
+
+    public ReaderBuffer(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next chunk of characters from the reader into the window. This should only be called when there
+     * are no pending characters left.
+     *
+     * @return true if at least one character has been read and false if the end of the stream has been reached.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    private boolean fill() throws IOException {
+        if (eos) {
+            return false;
+        }
+        // Slide the marked characters to the front of the window and drop everything before them, after their line
+        // breaks have been recorded
+        int keepFrom = mark >= 0 ? mark : pos;
+        scanLines(windowOffset + keepFrom);
+        int numKept = limit - keepFrom;
+        System.arraycopy(chars, keepFrom, chars, 0, numKept);
+        if (mark >= 0) {
+            mark = 0;
+        }
+        pos -= keepFrom;
+        limit = numKept;
+        windowOffset += keepFrom;
+        // Keep at least half of the window free for the next chunk
+        if (limit > chars.length / 2) {
+            char[] newChars = new char[chars.length * 2];
+            System.arraycopy(chars, 0, newChars, 0, limit);
+            chars = newChars;
+        }
+        int numRead = 0;
+        // A reader may return 0 characters without reaching the end of the stream
+        while (numRead == 0) {
+            numRead = reader.read(chars, limit, chars.length - limit);
+        }
+        if (numRead < 0) {
+            eos = true;
+            return false;
+        }
+        limit += numRead;
+        return true;
+    }
+
+    @Override
+    public short peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return EOS;
+        }
+        return (short) chars[pos];
+    }
+
+    @Override
+    public short read() throws IOException {
+        short c = peek();
+        if (pos < limit) {
+            ++pos;
+        }
+        return c;
+    }
+
+    @Override
+    public void skipSpaces() throws IOException {
+        do {
+            pos = CharScanner.getInstance().skipSpaces(chars, pos, limit);
+        } while (pos == limit && fill());
+    }
+
+    @Override
+    public int skipIdentifierPart(int hash) throws IOException {
+        do {
+            int from = pos;
+            pos = CharScanner.getInstance().skipIdentifierPart(chars, pos, limit);
+            for (int i = from; i < pos; ++i) {
+                hash = 31 * hash + chars[i];
+            }
+        } while (pos == limit && fill());
+        return hash;
+    }
+
+    @Override
+    public void mark() {
+        mark = pos;
+    }
+
+    @Override
+    public int getMarkOffset() {
+        return windowOffset + (mark >= 0 ? mark : pos);
+    }
+
+    @Override
+    public int getOffset() {
+        return windowOffset + pos;
+    }
+
+    @Override
+    public String getMarkedText() {
+        if (mark < 0) {
+            return "";
+        }
+        return new String(chars, mark, pos - mark);
+    }
+
+    @Override
+    protected void scanLines(int offset) {
+        int from = lineTable.getScannedTo();
+        int to = Math.min(offset, windowOffset + limit);
+        if (to > from) {
+            lineTable.scan(chars, from - windowOffset, to - windowOffset);
+        }
+    }
+
+    @Override
+    public boolean markedTextEquals(String str) {
+        int len = mark >= 0 ? pos - mark : 0;
+        if (len != str.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; ++i) {
+            if (chars[mark + i] != str.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,648 @@
+package LexerSpace;
+
+import Exceptions.CancellationError;
+import Exceptions.SyntaxError;
+import Symbols.SymbolTable;
+import Utilities.CancellationToken;
+import Utilities.NumberToken;
+import Utilities.Token;
+import Utilities.TokenType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A whole input lexed into parallel primitive arrays. The i-th token is described by its type, the offset and the
+ * length of its text in the input and, for numeric literals, its value. Token objects are only created
+ * when they are requested through getNextToken, and their text is a slice of the input.
+ *
+ * <p>A keyword, a type or an operator instead keeps the index of its shared token in the place of a value, so that
+ * its token is the shared token of its own lexeme even when several lexemes have the same type.
+ */
+public class TokenStream implements ITokenSource {
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+    private static final int INIT_CAPACITY = 64;
+    // Smallest number of characters lexed by each task of a parallel lexing
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    // Flag set in the type of a numeric literal whose text is normalized
+    private static final int NORMALIZED_FLAG = 1 << 16;
+    private static final int TYPE_MASK = NORMALIZED_FLAG - 1;
+    private final char[] chars;
+    private final CharArrayBuffer source;
+    // Distinct shared tokens of the keywords, types and operators in the stream
+    private final ArrayList<Token> fixedTokens;
+    // Index in fixedTokens of the last shared token of each type, which is most likely the next one
+    private final int[] lastFixedTokenIds;
+    // Indices of the numeric literals that are normalized in increasing order, and their normalized texts
+    private int[] normalizedIndices;
+    private String[] normalizedTexts;
+    private int numNormalized = 0;
+    // Ordinals of the types, with NORMALIZED_FLAG for the normalized literals
+    private int[] types;
+    private int[] starts;
+    private int[] lengths;
+    // Values of INT literals, bits of the values of FLOAT literals, and 1 + the index in fixedTokens of the shared
+    // token of the other tokens or 0 if they have none
+    private long[] values;
+    private int size = 0;
+    private int cursor = 0;
+    // Position of the cursor at the last mark, or -1 if there is no mark
+    private int markedCursor = -1;
+    // The token last returned by peek or getNextToken, so that a token that is peeked and then consumed is created once
+    private Token lastToken;
+    private int lastTokenIndex = -1;
+
+    /**
+     * Creates an empty token stream over characters.
+     *
+     * @param chars    the characters.
+     * @param capacity the initial number of tokens that the arrays can hold.
+     */
+    private TokenStream(char[] chars, int capacity) {
+        this.chars = chars;
+        this.source = new CharArrayBuffer(chars);
+        this.fixedTokens = new ArrayList<>();
+        this.lastFixedTokenIds = new int[TOKEN_TYPES.length];
+        this.normalizedIndices = new int[0];
+        this.normalizedTexts = new String[0];
+        capacity = Math.max(INIT_CAPACITY, capacity);
+        types = new int[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        values = new long[capacity];
+    }
+
+    /**
+     * Creates a view of a token stream that shares its tokens.
+     *
+     * @param other the token stream.
+     */
+    private TokenStream(TokenStream other) {
+        this.chars = other.chars;
+        this.source = other.source;
+        this.fixedTokens = other.fixedTokens;
+        this.lastFixedTokenIds = other.lastFixedTokenIds;
+        this.normalizedIndices = other.normalizedIndices;
+        this.normalizedTexts = other.normalizedTexts;
+        this.numNormalized = other.numNormalized;
+        this.types = other.types;
+        this.starts = other.starts;
+        this.lengths = other.lengths;
+        this.values = other.values;
+        this.size = other.size;
+        this.cursor = other.cursor;
+    }
+
+    /**
+     * Lexes a whole input into a token stream.
+     *
+     * @param input the input to be lexed.
+     * @return a token stream with all the tokens in the input.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    public static TokenStream lex(CharSequence input) throws SyntaxError, IOException {
+        return lex(input, CancellationToken.NONE);
+    }
+
+    /**
+     * Lexes a whole input into a token stream, checking a cancellation token as the tokens are scanned.
+     *
+     * @param input             the input to be lexed.
+     * @param cancellationToken the token through which lexing is cancelled.
+     * @return a token stream with all the tokens in the input.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     * @throws CancellationError if the cancellation token has tripped.
+     */
+    public static TokenStream lex(CharSequence input, CancellationToken cancellationToken)
+            throws SyntaxError, IOException {
+        char[] chars = input.toString().toCharArray();
+        TokenStream tokenStream = new TokenStream(chars, chars.length / 4);
+        tokenStream.lexAll(createLexer(new CharArrayBuffer(chars), cancellationToken));
+        return tokenStream;
+    }
+
+    /**
+     * Reads a whole stream and lexes it into a token stream.
+     *
+     * @param reader the stream to be lexed.
+     * @return a token stream with all the tokens in the stream.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    public static TokenStream lex(BufferedReader reader) throws SyntaxError, IOException {
+        return lex(reader, CancellationToken.NONE);
+    }
+
+    /**
+     * Reads a whole stream and lexes it into a token stream, checking a cancellation token as the tokens are scanned.
+     *
+     * @param reader            the stream to be lexed.
+     * @param cancellationToken the token through which lexing is cancelled.
+     * @return a token stream with all the tokens in the stream.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     * @throws CancellationError if the cancellation token has tripped.
+     */
+    public static TokenStream lex(BufferedReader reader, CancellationToken cancellationToken)
+            throws SyntaxError, IOException {
+        char[] chars = new char[8192];
+        int len = 0;
+        int numRead;
+        while ((numRead = reader.read(chars, len, chars.length - len)) >= 0) {
+            len += numRead;
+            if (len == chars.length) {
+                chars = Arrays.copyOf(chars, chars.length * 2);
+            }
+        }
+        chars = Arrays.copyOf(chars, len);
+        TokenStream tokenStream = new TokenStream(chars, len / 4);
+        tokenStream.lexAll(createLexer(new CharArrayBuffer(chars), cancellationToken));
+        return tokenStream;
+    }
+
+    /**
+     * Lexes a whole input into a token stream by splitting it into chunks that are lexed concurrently on the common
+     * fork-join pool. The token stream is the same as the one built by lex.
+     *
+     * @param input the input to be lexed.
+     * @return a token stream with all the tokens in the input.
+     * @throws SyntaxError if there is a syntax error, the first one in the input if there are several.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    public static TokenStream lexParallel(CharSequence input) throws SyntaxError, IOException {
+        return lexParallel(input, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Lexes a whole input into a token stream by splitting it into chunks that are lexed concurrently on a fork-join
+     * pool. The token stream is the same as the one built by lex.
+     *
+     * @param input the input to be lexed.
+     * @param pool  the pool that runs the lexing tasks.
+     * @return a token stream with all the tokens in the input.
+     * @throws SyntaxError if there is a syntax error, the first one in the input if there are several.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    public static TokenStream lexParallel(CharSequence input, ForkJoinPool pool) throws SyntaxError, IOException {
+        return lexParallel(input, pool, CancellationToken.NONE);
+    }
+
+    /**
+     * Lexes a whole input into a token stream by splitting it into chunks that are lexed concurrently on a fork-join
+     * pool. Every chunk checks a cancellation token as its tokens are scanned. The token stream is the same as the one
+     * built by lex.
+     *
+     * @param input             the input to be lexed.
+     * @param pool              the pool that runs the lexing tasks.
+     * @param cancellationToken the token through which lexing is cancelled.
+     * @return a token stream with all the tokens in the input.
+     * @throws SyntaxError if there is a syntax error, the first one in the input if there are several.
+     * @throws IOException if the read operation causes an IO error.
+     * @throws CancellationError if the cancellation token has tripped.
+     */
+    public static TokenStream lexParallel(CharSequence input, ForkJoinPool pool, CancellationToken cancellationToken)
+            throws SyntaxError, IOException {
+        char[] chars = input.toString().toCharArray();
+        // Without parallelism, splitting and stitching the chunks would only add work
+        int chunkSize = pool.getParallelism() > 1 ? Math.max(MIN_CHUNK_SIZE, chars.length / (4 *
+                pool.getParallelism())) : chars.length;
+        return lexParallel(chars, pool, chunkSize, cancellationToken);
+    }
+
+    /**
+     * Lexes characters in chunks of about the given size. Since no token contains ';' and the lexer keeps no state
+     * between two tokens, the characters are split after the first ';' that follows each chunk size, and lexing the
+     * chunks separately gives the same tokens as lexing the whole characters.
+     *
+     * @param chars             the characters to be lexed.
+     * @param pool              the pool that runs the lexing tasks.
+     * @param chunkSize         the smallest number of characters in a chunk.
+     * @param cancellationToken the token through which lexing is cancelled.
+     * @return a token stream with all the tokens in the characters.
+     * @throws SyntaxError if there is a syntax error, the first one in the characters if there are several.
+     * @throws IOException if the read operation causes an IO error.
+     * @throws CancellationError if the cancellation token has tripped.
+     */
+    static TokenStream lexParallel(char[] chars, ForkJoinPool pool, int chunkSize, CancellationToken cancellationToken)
+            throws SyntaxError, IOException {
+        // The symbol table and its reserved words are set up here so that the tasks only read them
+        SymbolTable.getInstance().getReservedWords();
+        ArrayList<LexingTask> tasks = new ArrayList<>();
+        int from = 0;
+        while (from < chars.length) {
+            int to = from + Math.min(chunkSize, chars.length - from);
+            while (to < chars.length && chars[to - 1] != ';') {
+                ++to;
+            }
+            tasks.add(new LexingTask(new TokenStream(chars, (to - from) / 4), createLexer(new CharArrayBuffer(chars,
+                    from, to), cancellationToken)));
+            from = to;
+        }
+        if (tasks.size() > 1) {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        } else {
+            tasks.forEach(LexingTask::compute);
+        }
+
+        // Stitch the chunks together, the offsets are already those of the whole characters
+        int totalSize = 0;
+        for (LexingTask task : tasks) {
+            if (task.syntaxError != null) {
+                throw task.syntaxError;
+            }
+            if (task.ioException != null) {
+                throw task.ioException;
+            }
+            totalSize += task.tokenStream.size;
+        }
+        if (tasks.size() == 1) {
+            return tasks.get(0).tokenStream;
+        }
+        TokenStream tokenStream = new TokenStream(chars, totalSize);
+        for (LexingTask task : tasks) {
+            tokenStream.append(task.tokenStream);
+        }
+        return tokenStream;
+    }
+
+    /**
+     * Creates a lexer over a buffer that checks a cancellation token.
+     *
+     * @param buffer            the buffer of the characters to be lexed.
+     * @param cancellationToken the token through which lexing is cancelled.
+     * @return the lexer.
+     */
+    private static Lexer createLexer(CharArrayBuffer buffer, CancellationToken cancellationToken) {
+        Lexer lexer = new Lexer(buffer);
+        lexer.setCancellationToken(cancellationToken);
+        return lexer;
+    }
+
+    /**
+     * A task that lexes a chunk of the characters into its own token stream. The task is never serialized.
+     */
+    @SuppressWarnings("serial")
+    private static class LexingTask extends RecursiveAction {
+        private final TokenStream tokenStream;
+        private final Lexer lexer;
+        private SyntaxError syntaxError;
+        private IOException ioException;
+
+        public LexingTask(TokenStream tokenStream, Lexer lexer) {
+            this.tokenStream = tokenStream;
+            this.lexer = lexer;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                tokenStream.lexAll(lexer);
+            } catch (SyntaxError e) {
+                syntaxError = e;
+            } catch (IOException e) {
+                ioException = e;
+            }
+        }
+    }
+
+    /**
+     * Appends the tokens of another stream over the same characters that have been lexed from where the tokens of this
+     * stream end. The shared tokens of the other stream are appended to those of this stream, so the indices of the
+     * appended shared tokens are shifted.
+     *
+     * @param other the other token stream.
+     */
+    private void append(TokenStream other) {
+        int newSize = size + other.size;
+        if (newSize > types.length) {
+            types = Arrays.copyOf(types, newSize);
+            starts = Arrays.copyOf(starts, newSize);
+            lengths = Arrays.copyOf(lengths, newSize);
+            values = Arrays.copyOf(values, newSize);
+        }
+        System.arraycopy(other.types, 0, types, size, other.size);
+        System.arraycopy(other.starts, 0, starts, size, other.size);
+        System.arraycopy(other.lengths, 0, lengths, size, other.size);
+        System.arraycopy(other.values, 0, values, size, other.size);
+        int fixedTokenShift = fixedTokens.size();
+        if (fixedTokenShift > 0) {
+            for (int i = size; i < newSize; ++i) {
+                if (values[i] != 0 && !isNumber(types[i])) {
+                    values[i] += fixedTokenShift;
+                }
+            }
+        }
+        fixedTokens.addAll(other.fixedTokens);
+        for (int i = 0; i < other.numNormalized; ++i) {
+            addNormalizedText(other.normalizedIndices[i] + size, other.normalizedTexts[i]);
+        }
+        size = newSize;
+    }
+
+    /**
+     * Lexes all the characters of a lexer and appends the tokens to the arrays.
+     *
+     * @param lexer a lexer over the characters or a range of them.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    private void lexAll(Lexer lexer) throws SyntaxError, IOException {
+        TokenType tokenType;
+        while ((tokenType = lexer.scanNextToken()) != null) {
+            add(tokenType, lexer.getScannedOffset(), lexer.getScannedLength());
+            if (tokenType == TokenType.INT || tokenType == TokenType.FLOAT) {
+                values[size - 1] = lexer.getNumberBits();
+                String normalizedText = lexer.getNormalizedText();
+                if (normalizedText != null) {
+                    types[size - 1] |= NORMALIZED_FLAG;
+                    addNormalizedText(size - 1, normalizedText);
+                }
+            } else {
+                Token fixedToken = lexer.getFixedToken();
+                if (fixedToken != null) {
+                    values[size - 1] = getFixedTokenId(fixedToken) + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the index of a shared token in fixedTokens, and adds the token if it is not there yet.
+     *
+     * @param fixedToken the shared token.
+     * @return the index of the shared token.
+     */
+    private int getFixedTokenId(Token fixedToken) {
+        int typeOrdinal = fixedToken.getType().ordinal();
+        int id = lastFixedTokenIds[typeOrdinal];
+        if (id < fixedTokens.size() && fixedTokens.get(id) == fixedToken) {
+            return id;
+        }
+        // There are few distinct shared tokens, so they are searched linearly
+        id = fixedTokens.indexOf(fixedToken);
+        if (id < 0) {
+            id = fixedTokens.size();
+            fixedTokens.add(fixedToken);
+        }
+        lastFixedTokenIds[typeOrdinal] = id;
+        return id;
+    }
+
+    /**
+     * Records the normalized text of a numeric literal, which follows the literals already recorded.
+     *
+     * @param index          index of the literal.
+     * @param normalizedText the normalized text.
+     */
+    private void addNormalizedText(int index, String normalizedText) {
+        if (numNormalized == normalizedIndices.length) {
+            int capacity = Math.max(INIT_CAPACITY, numNormalized * 2);
+            normalizedIndices = Arrays.copyOf(normalizedIndices, capacity);
+            normalizedTexts = Arrays.copyOf(normalizedTexts, capacity);
+        }
+        normalizedIndices[numNormalized] = index;
+        normalizedTexts[numNormalized] = normalizedText;
+        ++numNormalized;
+    }
+
+    /**
+     * Gets the normalized text of a numeric literal whose type has NORMALIZED_FLAG.
+     *
+     * @param index index of the literal.
+     * @return the normalized text.
+     */
+    private String getNormalizedText(int index) {
+        return normalizedTexts[Arrays.binarySearch(normalizedIndices, 0, numNormalized, index)];
+    }
+
+    /**
+     * Determines if a type with its flags is the type of a numeric literal.
+     *
+     * @param type the ordinal of the type, with its flags.
+     * @return true if the type is INT or FLOAT and false otherwise.
+     */
+    private static boolean isNumber(int type) {
+        type &= TYPE_MASK;
+        return type == TokenType.INT.ordinal() || type == TokenType.FLOAT.ordinal();
+    }
+
+    /**
+     * Appends a token to the arrays.
+     *
+     * @param tokenType type of the token.
+     * @param start     offset of the token in the input.
+     * @param length    length of the token in the input.
+     */
+    private void add(TokenType tokenType, int start, int length) {
+        if (size == types.length) {
+            int capacity = types.length * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        types[size] = tokenType.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        ++size;
+    }
+
+    /**
+     * Creates a view of the stream with its own cursor, which starts at the cursor of this stream, and without a mark.
+     * The view shares the tokens with this stream, so that several threads can each read the tokens through their
+     * own view. The lines of the whole input are scanned here since they are otherwise scanned on the first request.
+     *
+     * @return a view of the stream.
+     */
+    public TokenStream view() {
+        if (size > 0) {
+            line(size - 1);
+        }
+        return new TokenStream(this);
+    }
+
+    /**
+     * Gets the number of tokens in the stream.
+     *
+     * @return the number of tokens.
+     */
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(int index) {
+        return TOKEN_TYPES[types[index] & TYPE_MASK];
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    /**
+     * Gets the line of a token. The lines of the input are scanned on the first request, not while lexing.
+     *
+     * @param index index of the token.
+     * @return the line of the token, starting at 1.
+     */
+    public int line(int index) {
+        return source.getLine(starts[index]);
+    }
+
+    /**
+     * Gets the column of a token.
+     *
+     * @param index index of the token.
+     * @return the column of the token, starting at 1.
+     */
+    public int column(int index) {
+        return source.getColumn(starts[index]);
+    }
+
+    /**
+     * Gets the value of a numeric literal as a long. The value of a FLOAT literal is converted as by a cast.
+     *
+     * @param index index of the literal.
+     * @return the value of the literal.
+     */
+    public long longValue(int index) {
+        return type(index) == TokenType.FLOAT ? (long) Double.longBitsToDouble(values[index]) : values[index];
+    }
+
+    /**
+     * Gets the value of a numeric literal as a double. The value of an INT literal is converted as by a cast.
+     *
+     * @param index index of the literal.
+     * @return the value of the literal.
+     */
+    public double doubleValue(int index) {
+        return type(index) == TokenType.FLOAT ? Double.longBitsToDouble(values[index]) : values[index];
+    }
+
+    /**
+     * Gets the text of a token.
+     *
+     * @param index index of the token.
+     * @return the text of the token.
+     */
+    public String text(int index) {
+        if ((types[index] & NORMALIZED_FLAG) != 0) {
+            return getNormalizedText(index);
+        }
+        if (values[index] != 0 && !isNumber(types[index])) {
+            return fixedTokens.get((int) values[index] - 1).getValue();
+        }
+        return source.getText(starts[index], lengths[index]);
+    }
+
+    /**
+     * Gets a token object for a token in the stream. Keywords, types and operators are their own shared tokens, whose
+     * offsets are only known from start, and the other tokens are created as slices of the input. Numeric literals are
+     * created as number tokens that carry their values.
+     *
+     * @param index index of the token.
+     * @return the token at the given index.
+     */
+    public Token token(int index) {
+        TokenType tokenType = type(index);
+        if (tokenType == TokenType.INT || tokenType == TokenType.FLOAT) {
+            if ((types[index] & NORMALIZED_FLAG) != 0) {
+                return new NumberToken(getNormalizedText(index), tokenType, starts[index], values[index]);
+            }
+            return new NumberToken(source, starts[index], lengths[index], tokenType, values[index]);
+        }
+        if (values[index] != 0) {
+            return fixedTokens.get((int) values[index] - 1);
+        }
+        return new Token(source, starts[index], lengths[index], tokenType);
+    }
+
+    /**
+     * Gets the index of the next token to be returned by getNextToken.
+     *
+     * @return the index of the next token.
+     */
+    public int getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Moves the cursor so that the next token returned by getNextToken is the token at the given index.
+     *
+     * @param cursor index of the next token.
+     */
+    public void setCursor(int cursor) {
+        if (cursor < 0 || cursor > size) {
+            throw new IndexOutOfBoundsException("Invalid index for the cursor");
+        }
+        this.cursor = cursor;
+    }
+
+    /**
+     * Marks the current position of the cursor.
+     */
+    @Override
+    public void mark() {
+        markedCursor = cursor;
+    }
+
+    /**
+     * Moves the cursor back to the last mark.
+     */
+    @Override
+    public void reset() {
+        if (markedCursor < 0) {
+            throw new IllegalStateException("Cannot reset the cursor without a mark");
+        }
+        cursor = markedCursor;
+        markedCursor = -1;
+    }
+
+    /**
+     * Gets the token at an index for peek and getNextToken, which reuse the token object that they last returned.
+     *
+     * @param index index of the token.
+     * @return the token at the given index.
+     */
+    private Token cachedToken(int index) {
+        if (index != lastTokenIndex) {
+            lastToken = token(index);
+            lastTokenIndex = index;
+        }
+        return lastToken;
+    }
+
+    @Override
+    public Token peek(int k) {
+        int index = cursor + k;
+        return index < size ? cachedToken(index) : null;
+    }
+
+    @Override
+    public Token getNextToken() {
+        if (cursor == size) {
+            return null;
+        }
+        return cachedToken(cursor++);
+    }
+
+    @Override
+    public int getTokenOffset() {
+        return cursor > 0 ? starts[cursor - 1] : -1;
+    }
+
+    @Override
+    public int getCurrLine() {
+        return cursor > 0 ? line(cursor - 1) : 1;
+    }
+}
@@ -0,0 +1,295 @@
+package LexerSpace;
+
+import Utilities.ISourceText;
+import Utilities.NumberToken;
+import Utilities.Token;
+import Utilities.TokenType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An input buffer that decodes UTF-8 encoded bytes as they are consumed, for instance bytes of a read-only memory
+ * mapping of a file. ASCII characters are returned as they are, and multibyte sequences are decoded only when they are
+ * reached. Since the bytes stay in memory, tokens are created as slices of the bytes and their text is decoded on
+ * demand.
+ */
+class Utf8Buffer extends InputBuffer implements ISourceText {
+    private static final char REPLACEMENT_CHAR = '\uFFFD';
+    private final ByteBuffer bytes;
+    // The array and the index of the first byte if the bytes are backed by an accessible array
+    private final byte[] array;
+    private final int arrayOffset;
+    private final int size;
+    // Index of the next byte to be decoded
+    private int pos = 0;
+    // Whether the high surrogate of the supplementary character at pos has been consumed
+    private boolean inSurrogatePair = false;
+    // Decoded character at pos and the number of bytes it takes
+    private int decodedPos = -1;
+    private int decodedChar;
+    private int decodedLen;
+    // Index of the byte at the last mark
+    private int markPos = -1;
+
+    /**
+     * Creates a buffer over the remaining bytes of a byte buffer. Offsets in the buffer are relative to the current
+     * position of the byte buffer, whose position and limit are left unchanged.
+     *
+     * @param bytes the UTF-8 encoded bytes.
+     */
+    public Utf8Buffer(ByteBuffer bytes) {
+        this.bytes = bytes.slice();
+        this.size = this.bytes.limit();
+        if (this.bytes.hasArray()) {
+            this.array = this.bytes.array();
+            this.arrayOffset = this.bytes.arrayOffset();
+        } else {
+            this.array = null;
+            this.arrayOffset = 0;
+        }
+    }
+
+    public Utf8Buffer(byte[] bytes) {
+        this(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Creates a buffer over a read-only memory mapping of a UTF-8 encoded file.
+     *
+     * @param path path to the file.
+     * @return a buffer over the mapped file.
+     * @throws IOException if the file cannot be opened or mapped.
+     */
+    public static Utf8Buffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException("File '" + path + "' is too large to be mapped");
+            }
+            // The mapping stays valid after the channel is closed
+            return new Utf8Buffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize));
+        }
+    }
+
+    /**
+     * Gets a byte, straight from the backing array if there is one.
+     *
+     * @param index index of the byte.
+     * @return the byte.
+     */
+    private byte byteAt(int index) {
+        return array != null ? array[arrayOffset + index] : bytes.get(index);
+    }
+
+    /**
+     * Determines if the byte at the given index is a UTF-8 continuation byte.
+     *
+     * @param index index of the byte.
+     * @return true if the byte exists and is a continuation byte and false otherwise.
+     */
+    private boolean isContinuation(int index) {
+        return index < size && (byteAt(index) & 0xC0) == 0x80;
+    }
+
+    /**
+     * Decodes the multibyte sequence starting at the current byte. A malformed sequence is decoded as a replacement
+     * character that only takes its first byte.
+     */
+    private void decodeMultibyte() {
+        int b0 = byteAt(pos) & 0xFF;
+        int codePoint = -1;
+        int len = 1;
+
+        if (b0 >= 0xC2 && b0 <= 0xDF && isContinuation(pos + 1)) {
+            codePoint = (b0 & 0x1F) << 6 | byteAt(pos + 1) & 0x3F;
+            len = 2;
+        } else if (b0 >= 0xE0 && b0 <= 0xEF && isContinuation(pos + 1) && isContinuation(pos + 2)) {
+            codePoint = (b0 & 0x0F) << 12 | (byteAt(pos + 1) & 0x3F) << 6 | byteAt(pos + 2) & 0x3F;
+            len = 3;
+            // Reject overlong encodings and surrogates
+            if (codePoint < 0x800 || Character.isSurrogate((char) codePoint)) {
+                codePoint = -1;
+            }
+        } else if (b0 >= 0xF0 && b0 <= 0xF4 && isContinuation(pos + 1) && isContinuation(pos + 2) &&
+                isContinuation(pos + 3)) {
+            codePoint = (b0 & 0x07) << 18 | (byteAt(pos + 1) & 0x3F) << 12 | (byteAt(pos + 2) & 0x3F) << 6 |
+                    byteAt(pos + 3) & 0x3F;
+            len = 4;
+            if (codePoint < 0x10000 || codePoint > Character.MAX_CODE_POINT) {
+                codePoint = -1;
+            }
+        }
+
+        decodedPos = pos;
+        if (codePoint < 0) {
+            decodedChar = REPLACEMENT_CHAR;
+            decodedLen = 1;
+        } else {
+            decodedChar = codePoint;
+            decodedLen = len;
+        }
+    }
+
+    @Override
+    public short peek() {
+        if (pos == size) {
+            return EOS;
+        }
+        byte b = byteAt(pos);
+        if (b >= 0) {
+            // ASCII character
+            return b;
+        }
+        if (decodedPos != pos) {
+            decodeMultibyte();
+        }
+        if (Character.isBmpCodePoint(decodedChar)) {
+            return (short) decodedChar;
+        }
+        // A supplementary character is read as a surrogate pair
+        return (short) (inSurrogatePair ? Character.lowSurrogate(decodedChar) : Character.highSurrogate(decodedChar));
+    }
+
+    @Override
+    public short read() {
+        // Fast path for an ASCII character read straight from the bytes
+        if (pos < size) {
+            byte b = byteAt(pos);
+            if (b >= 0) {
+                ++pos;
+                return b;
+            }
+        }
+        short c = peek();
+        if (pos < size) {
+            if (byteAt(pos) >= 0) {
+                ++pos;
+            } else if (Character.isBmpCodePoint(decodedChar) || inSurrogatePair) {
+                pos += decodedLen;
+                inSurrogatePair = false;
+            } else {
+                inSurrogatePair = true;
+            }
+        }
+        return c;
+    }
+
+    @Override
+    public void skipSpaces() {
+        // The bytes cannot be scanned directly in the middle of a surrogate pair
+        if (!inSurrogatePair) {
+            byte b;
+            while (pos < size && (b = byteAt(pos)) >= 0 && (CharClass.of(b) & CharClass.SPACE) != 0) {
+                ++pos;
+            }
+        }
+        // Non-ASCII spaces are decoded
+        while ((CharClass.of(peek()) & CharClass.SPACE) != 0) {
+            read();
+        }
+    }
+
+    @Override
+    public int skipIdentifierPart(int hash) {
+        while (true) {
+            if (!inSurrogatePair) {
+                byte b;
+                while (pos < size && (b = byteAt(pos)) >= 0 && (CharClass.of(b) & CharClass.ID_PART) != 0) {
+                    hash = 31 * hash + b;
+                    ++pos;
+                }
+            }
+            // Only a non-ASCII character is decoded, after which the bytes are scanned directly again
+            short c = peek();
+            if ((CharClass.of(c) & CharClass.ID_PART) == 0) {
+                return hash;
+            }
+            hash = 31 * hash + (char) read();
+        }
+    }
+
+    @Override
+    public void mark() {
+        // A token never starts in the middle of a surrogate pair since surrogates are neither letters nor operators
+        markPos = pos;
+    }
+
+    @Override
+    public int getMarkOffset() {
+        return markPos;
+    }
+
+    @Override
+    public int getOffset() {
+        return pos;
+    }
+
+    @Override
+    public String getMarkedText() {
+        return getText(markPos, pos - markPos);
+    }
+
+    @Override
+    public boolean markedTextEquals(String str) {
+        int len = pos - markPos;
+        if (len == str.length()) {
+            // A non-ASCII byte never matches a character, so the bytes can be compared with the characters directly
+            int i = 0;
+            while (i < len && byteAt(markPos + i) == str.charAt(i)) {
+                ++i;
+            }
+            if (i == len) {
+                return true;
+            }
+        }
+        // The bytes of a non-ASCII string differ from its characters, so the text is decoded to compare them
+        for (int i = 0; i < str.length(); ++i) {
+            if (str.charAt(i) >= 0x80) {
+                return getMarkedText().equals(str);
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Token createMarkedToken(TokenType tokenType) {
+        return new Token(this, markPos, pos - markPos, tokenType);
+    }
+
+    @Override
+    public NumberToken createMarkedNumberToken(TokenType tokenType, long valueBits) {
+        return new NumberToken(this, markPos, pos - markPos, tokenType, valueBits);
+    }
+
+    @Override
+    protected void scanLines(int offset) {
+        lineTable.scan(bytes, Math.min(offset, size));
+    }
+
+    /**
+     * Gets the column of an offset in the input. Offsets count bytes, but columns count the decoded characters.
+     *
+     * @param offset the offset.
+     * @return the column, starting at 1.
+     */
+    @Override
+    public int getColumn(int offset) {
+        int lineStart = lineTable.getLineStart(getLine(offset));
+        return getText(lineStart, offset - lineStart).length() + 1;
+    }
+
+    @Override
+    public String getText(int offset, int length) {
+        if (array != null) {
+            return new String(array, arrayOffset + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] textBytes = new byte[length];
+        bytes.get(offset, textBytes);
+        return new String(textBytes, StandardCharsets.UTF_8);
+    }
+}
@@ -128,6 +128,30 @@ public class OperatorTable {
         return op1.isLeftToRight() ? 1 : -1;
     }
 
+    /**
+     * Gets how strongly an operator binds the operand on its left. An operator takes the operand that follows another
+     * operator if its left binding power is greater than the right binding power of the other operator, which agrees
+     * with the comparison of their precedences.
+     *
+     * @param opID the operator ID.
+     * @return the left binding power of the operator.
+     */
+    public int getLeftBindingPower(TokenType opID) {
+        return opTable.get(opID).getPreced() * 2 + 1;
+    }
+
+    /**
+     * Gets how strongly an operator binds the operand on its right. A left-to-right operator keeps its operand from
+     * an operator with the same precedence, whereas a right-to-left operator gives it away.
+     *
+     * @param opID the operator ID.
+     * @return the right binding power of the operator.
+     */
+    public int getRightBindingPower(TokenType opID) {
+        Operator op = opTable.get(opID);
+        return op.isLeftToRight() ? op.getPreced() * 2 + 1 : op.getPreced() * 2;
+    }
+
     /**
      * Maps a binary operator to a unary operator with the same string representation.
      *
@@ -1,24 +1,69 @@
 package ParserSpace;
 
+import Exceptions.CancellationError;
+import Utilities.CancellationToken;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
 public class ASTTraversal {
+    private static final int INIT_DEPTH = 16;
     private final IASTNodeVisitor nodeVisitor;
+    private CancellationToken cancellationToken = CancellationToken.NONE;
 
     public ASTTraversal(IASTNodeVisitor nodeVisitor) {
         this.nodeVisitor = nodeVisitor;
     }
 
     /**
-     * Traverse the AST by visiting each node in the tree.
+     * Sets the token through which traversals are cancelled. The token is checked as the nodes are visited.
+     *
+     * @param cancellationToken the cancellation token.
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Traverse the AST by visiting each node in the tree. The path from the starting node is kept on explicit stacks
+     * rather than on the call stack, so that the depth of the tree is only limited by the heap.
      *
      * @param node the starting AST node.
+     * @throws CancellationError if the cancellation token has tripped.
      */
     public void traverse(Node node) {
-        if (node != null) {
-            nodeVisitor.visit(node);
-            for (int i = 0; i < node.getNumChildren(); ++i) {
-                traverse(node.getChild(i));
+        if (node == null) {
+            return;
+        }
+        // Number of nodes until the cancellation token is checked
+        int numUntilCancellationCheck = CancellationToken.CHECK_INTERVAL;
+        // The nodes on the path from the starting node and the index of the next child to visit for each of them
+        ArrayList<Node> path = new ArrayList<>();
+        int[] nextChildIndices = new int[INIT_DEPTH];
+        nodeVisitor.visit(node);
+        path.add(node);
+
+        while (!path.isEmpty()) {
+            int depth = path.size() - 1;
+            Node currNode = path.get(depth);
+            if (nextChildIndices[depth] == currNode.getNumChildren()) {
+                nodeVisitor.backtrack(currNode);
+                path.remove(depth);
+                continue;
+            }
+            Node child = currNode.getChild(nextChildIndices[depth]++);
+            if (child != null) {
+                if (--numUntilCancellationCheck == 0) {
+                    numUntilCancellationCheck = CancellationToken.CHECK_INTERVAL;
+                    cancellationToken.check();
+                }
+                nodeVisitor.visit(child);
+                path.add(child);
+                if (path.size() > nextChildIndices.length) {
+                    nextChildIndices = Arrays.copyOf(nextChildIndices, nextChildIndices.length * 2);
+                }
+                nextChildIndices[depth + 1] = 0;
             }
-            nodeVisitor.backtrack(node);
         }
     }
 }
@@ -1,13 +1,17 @@
 package ParserSpace;
 
+import Exceptions.CancellationError;
 import Exceptions.SyntaxError;
+import LexerSpace.ITokenSource;
 import LexerSpace.Lexer;
 import Operators.OperatorTable;
+import Symbols.Declarations;
 import Symbols.IDInfo;
 import Symbols.SymbolInfo;
 import Symbols.SymbolTable;
 import Symbols.TypeInfo;
 import Utilities.Block;
+import Utilities.CancellationToken;
 import Utilities.Global;
 import Utilities.Token;
 import Utilities.TokenType;
@@ -15,21 +19,94 @@ import Utilities.TokenType;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class ExpressionParser {
-    private final Lexer lexer;
-    private int numParen = 0;
+    private static final int INIT_POSTFIX_LENGTH = 8;
+    private final ITokenSource tokenSource;
+    // The stacks are kept across expressions so that their arrays are allocated once for every parser
+    private final ArrayList<TokenNode> operandNodeStack = new ArrayList<>();
+    private final ArrayList<TokenNode> opNodeStack = new ArrayList<>();
+    private final ArrayList<Token> opTokenStack = new ArrayList<>();
+    private final ArrayDeque<TokenNode> nodeStack = new ArrayDeque<>();
+    private Declarations declarations = new Declarations();
+    private CancellationToken cancellationToken = CancellationToken.NONE;
+    // Number of operands until the cancellation token is checked
+    private int numUntilCancellationCheck = CancellationToken.CHECK_INTERVAL;
 
-    public ExpressionParser(Lexer lexer) {
-        this.lexer = lexer;
+    public ExpressionParser(ITokenSource tokenSource) {
+        this.tokenSource = tokenSource;
     }
 
-    public Lexer getLexer() {
-        return lexer;
+    public ITokenSource getTokenSource() {
+        return tokenSource;
+    }
+
+    /**
+     * Sets the declarations in which the variables of the expressions are looked up before the symbol table.
+     *
+     * @param declarations the declarations.
+     */
+    public void setDeclarations(Declarations declarations) {
+        this.declarations = declarations;
+    }
+
+    /**
+     * Sets the token through which parsing is cancelled. The token is checked as the operands of the expressions are
+     * consumed. The token source is not given the token.
+     *
+     * @param cancellationToken the cancellation token.
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Starts the parser and its lexer over another input, as if they were new. The lexer and the stacks of the parser
+     * are reused, so that parsing many small inputs only allocates their tokens and their ASTs.
+     *
+     * @param input the input, which must not change while its tokens are in use.
+     * @throws IllegalStateException if the token source of the parser is not a lexer.
+     */
+    public void restart(CharSequence input) {
+        if (!(tokenSource instanceof Lexer lexer)) {
+            throw new IllegalStateException("Cannot restart a parser whose token source is not a lexer");
+        }
+        lexer.restart(input);
+    }
+
+    /**
+     * Parses a batch of independent expressions with this parser, which is restarted on each of them in turn. Each
+     * input must hold exactly one expression.
+     *
+     * @param inputs the inputs, which must not change while their tokens are in use.
+     * @param scope  scope of the expressions.
+     * @return the AST root nodes of the expressions in the order of the inputs, with null for an empty expression.
+     * @throws SyntaxError if an input has a syntax error, whose line is counted from the start of the input.
+     * @throws IOException if the read operation causes an IO error.
+     * @throws IllegalStateException if the token source of the parser is not a lexer.
+     */
+    public List<Node> parseAll(List<? extends CharSequence> inputs, Block scope) throws SyntaxError, IOException {
+        List<Node> roots = new ArrayList<>(inputs.size());
+        for (CharSequence input : inputs) {
+            restart(input);
+            roots.add(parseExpression(scope));
+            // Only ';' can be left after an expression
+            Token token = tokenSource.getNextToken();
+            if (token != null) {
+                throw new SyntaxError("Invalid expression syntax at '" + token.getValue() + "'",
+                        tokenSource.getCurrLine());
+            }
+        }
+        return roots;
     }
 
     /**
      * Consumes an expression in a given scope and produces an AST root node associated with the parsed expression.
+     * The expression ends at the end of the input or before ';', which is left to be consumed by the statement.
+     * The expression is parsed in a single pass with explicit stacks of operands and operators rather than by
+     * recursion, so that its length and its nesting are only limited by the heap.
      *
      * @param scope scope of the expression.
      * @return an AST node that represents the root of the AST.
@@ -37,152 +114,484 @@ public class ExpressionParser {
      * @throws IOException if the read operation causes an IO error.
      */
     public Node parseExpression(Block scope) throws SyntaxError, IOException {
-        ArrayList<TokenNode> infixNodes = getExpressionInfixNodes(scope);
-        ArrayList<TokenNode> postfixNodes = getPostfixOrder(infixNodes);
-        return buildASTFromPostFix(postfixNodes);
+        if (isExpressionEnd(tokenSource.peek(0))) {
+            return null;
+        }
+        Token currToken = tokenSource.getNextToken();
+
+        OperatorTable opTable = OperatorTable.getInstance();
+        // Roots of the operands whose operators have not been consumed yet
+        ArrayList<TokenNode> operandNodes = operandNodeStack;
+        // Operators whose right operands are being parsed, with null standing for '('
+        ArrayList<TokenNode> opNodes = opNodeStack;
+        operandNodes.clear();
+        opNodes.clear();
+        int numOpenParen = 0;
+
+        while (true) {
+            // Consume the unary operators and the '(' before an operand, and then the operand
+            TokenNode node = createOperandNode(currToken, scope);
+            TokenType nodeTokenType = node.getToken().getType();
+            if (nodeTokenType == TokenType.LPAREN) {
+                opNodes.add(null);
+                ++numOpenParen;
+                currToken = getNextOperandToken(currToken.getValue());
+                continue;
+            } else if (nodeTokenType != TokenType.ID && nodeTokenType != TokenType.INT &&
+                    nodeTokenType != TokenType.FLOAT) {
+                opNodes.add(node);
+                currToken = getNextOperandToken(currToken.getValue());
+                continue;
+            }
+            operandNodes.add(node);
+
+            // Consume the ')' after the operand and then the binary operator, if there is any
+            while (true) {
+                currToken = tokenSource.peek(0);
+                if (isExpressionEnd(currToken)) {
+                    if (numOpenParen > 0) {
+                        throw new SyntaxError("Missing ')'", tokenSource.getCurrLine());
+                    }
+                    return createExpressionRoot(operandNodes, opNodes);
+                }
+
+                String currTokenStr = currToken.getValue();
+                TokenType currTokenType = currToken.getType();
+
+                if (currTokenType == TokenType.RPAREN) {
+                    if (numOpenParen > 0) {
+                        // Consume ')' and reduce the operators after the matching '('
+                        tokenSource.getNextToken();
+                        while (opNodes.get(opNodes.size() - 1) != null) {
+                            reduceOperator(operandNodes, opNodes.remove(opNodes.size() - 1));
+                        }
+                        opNodes.remove(opNodes.size() - 1);
+                        --numOpenParen;
+                        continue;
+                    } else {
+                        throw new SyntaxError("Redundant ')'", tokenSource.getCurrLine());
+                    }
+                }
+
+                // Check if the token is a valid binary operator
+                tokenSource.getNextToken();
+                if (!opTable.isOperator(currTokenType) || !opTable.isOperatorBinary(currTokenType)) {
+                    throw new SyntaxError("Invalid binary operator '" + currTokenStr + "'",
+                            tokenSource.getCurrLine());
+                }
+                // Reduce the operators that do not give their right operands to the binary operator
+                int leftBindingPower = opTable.getLeftBindingPower(currTokenType);
+                while (!opNodes.isEmpty() && opNodes.get(opNodes.size() - 1) != null &&
+                        opTable.getRightBindingPower(opNodes.get(opNodes.size() - 1).getToken().getType()) >=
+                                leftBindingPower) {
+                    reduceOperator(operandNodes, opNodes.remove(opNodes.size() - 1));
+                }
+                opNodes.add(new TokenNode(currToken));
+                currToken = getNextOperandToken(currTokenStr);
+                break;
+            }
+        }
     }
 
     /**
-     * Parses and retrieves a list of expression nodes in infix order.
+     * Consumes an expression like parseExpression but keeps it as its tokens in postfix order, so that no node is
+     * created until the root of its AST is requested.
      *
      * @param scope scope of the expression.
-     * @return a list of expression nodes in infix order.
-     * @throws SyntaxError if there is a syntax error.
+     * @return the expression, or null if the expression is empty.
+     * @throws SyntaxError if there is a syntax error, the same as parseExpression would throw.
      * @throws IOException if the read operation causes an IO error.
      */
-    public ArrayList<TokenNode> getExpressionInfixNodes(Block scope) throws SyntaxError, IOException {
-        ArrayList<TokenNode> nodes = new ArrayList<>();
-        recurParseExpression(nodes, scope);
-        return nodes;
+    public LazyExpression parseExpressionLazily(Block scope) throws SyntaxError, IOException {
+        if (isExpressionEnd(tokenSource.peek(0))) {
+            return null;
+        }
+        Token currToken = tokenSource.getNextToken();
+
+        OperatorTable opTable = OperatorTable.getInstance();
+        SymbolTable symbolTable = SymbolTable.getInstance();
+        // The tokens in postfix order and the types of the operands
+        Token[] postfixTokens = new Token[INIT_POSTFIX_LENGTH];
+        TypeInfo[] postfixTypes = new TypeInfo[INIT_POSTFIX_LENGTH];
+        int size = 0;
+        // Operators whose right operands are being parsed, with null standing for '('
+        ArrayList<Token> opTokens = opTokenStack;
+        opTokens.clear();
+        int numOpenParen = 0;
+
+        while (true) {
+            // Every token that is consumed is added to the postfix order at most once, and the operators that are
+            // waiting for their right operands are added later, so the arrays must have room for all of them
+            if (size + opTokens.size() >= postfixTokens.length) {
+                postfixTokens = Arrays.copyOf(postfixTokens, postfixTokens.length * 2);
+                postfixTypes = Arrays.copyOf(postfixTypes, postfixTypes.length * 2);
+            }
+
+            // Consume the unary operators and the '(' before an operand, and then the operand
+            TokenType operandType = getOperandType(currToken);
+            if (operandType == TokenType.LPAREN) {
+                opTokens.add(null);
+                ++numOpenParen;
+                currToken = getNextOperandToken(currToken.getValue());
+                continue;
+            } else if (operandType != TokenType.ID && operandType != TokenType.INT &&
+                    operandType != TokenType.FLOAT) {
+                opTokens.add(operandType == currToken.getType() ? currToken :
+                        new Token(currToken.getValue(), operandType, currToken.getOffset()));
+                currToken = getNextOperandToken(currToken.getValue());
+                continue;
+            }
+            postfixTypes[size] = operandType == TokenType.ID ? getIDInfo(currToken, scope).getType() :
+                    (TypeInfo) symbolTable.getType(operandType == TokenType.INT ? Global.INT_TYPE_ID :
+                            Global.FLOAT_TYPE_ID);
+            postfixTokens[size++] = currToken;
+
+            // Consume the ')' after the operand and then the binary operator, if there is any
+            while (true) {
+                currToken = tokenSource.peek(0);
+                if (isExpressionEnd(currToken)) {
+                    if (numOpenParen > 0) {
+                        throw new SyntaxError("Missing ')'", tokenSource.getCurrLine());
+                    }
+                    return createLazyExpression(postfixTokens, postfixTypes, size, opTokens);
+                }
+
+                String currTokenStr = currToken.getValue();
+                TokenType currTokenType = currToken.getType();
+
+                if (currTokenType == TokenType.RPAREN) {
+                    if (numOpenParen > 0) {
+                        // Consume ')' and move the operators after the matching '(' to the postfix order
+                        tokenSource.getNextToken();
+                        Token opToken;
+                        while ((opToken = opTokens.remove(opTokens.size() - 1)) != null) {
+                            postfixTokens[size++] = opToken;
+                        }
+                        --numOpenParen;
+                        continue;
+                    } else {
+                        throw new SyntaxError("Redundant ')'", tokenSource.getCurrLine());
+                    }
+                }
+
+                // Check if the token is a valid binary operator
+                tokenSource.getNextToken();
+                if (!opTable.isOperator(currTokenType) || !opTable.isOperatorBinary(currTokenType)) {
+                    throw new SyntaxError("Invalid binary operator '" + currTokenStr + "'",
+                            tokenSource.getCurrLine());
+                }
+                // Move the operators that do not give their right operands to the binary operator
+                int leftBindingPower = opTable.getLeftBindingPower(currTokenType);
+                while (!opTokens.isEmpty() && opTokens.get(opTokens.size() - 1) != null &&
+                        opTable.getRightBindingPower(opTokens.get(opTokens.size() - 1).getType()) >=
+                                leftBindingPower) {
+                    postfixTokens[size++] = opTokens.remove(opTokens.size() - 1);
+                }
+                opTokens.add(currToken);
+                currToken = getNextOperandToken(currTokenStr);
+                break;
+            }
+        }
     }
 
     /**
-     * A helper method that parses an expression recursively.
+     * Consumes an expression like parseExpression and checks its syntax without building its AST. The operands and
+     * the operators are reported to a listener in the order of the tokens, and no node is created.
      *
-     * @param nodes a list to store expression nodes in infix order.
-     * @param scope the scope of the expression.
-     * @param str   a string which the expression follows.
-     * @throws SyntaxError if there is a syntax error.
+     * @param scope    scope of the expression.
+     * @param listener the listener of the operands and the operators, or null.
+     * @throws SyntaxError if there is a syntax error, the same as parseExpression would throw.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    public void validateExpression(Block scope, IParseListener listener) throws SyntaxError, IOException {
+        if (isExpressionEnd(tokenSource.peek(0))) {
+            return;
+        }
+        Token currToken = tokenSource.getNextToken();
+
+        OperatorTable opTable = OperatorTable.getInstance();
+        int numOpenParen = 0;
+
+        while (true) {
+            // Consume the unary operators and the '(' before an operand, and then the operand
+            TokenType operandType = getOperandType(currToken);
+            if (operandType == TokenType.LPAREN) {
+                ++numOpenParen;
+            }
+            if (operandType != TokenType.ID && operandType != TokenType.INT && operandType != TokenType.FLOAT) {
+                if (listener != null) {
+                    listener.operator(currToken, operandType);
+                }
+                currToken = getNextOperandToken(currToken.getValue());
+                continue;
+            }
+            if (operandType == TokenType.ID) {
+                getIDInfo(currToken, scope);
+            }
+            if (listener != null) {
+                listener.operand(currToken);
+            }
+
+            // Consume the ')' after the operand and then the binary operator, if there is any
+            while (true) {
+                currToken = tokenSource.peek(0);
+                if (isExpressionEnd(currToken)) {
+                    if (numOpenParen > 0) {
+                        throw new SyntaxError("Missing ')'", tokenSource.getCurrLine());
+                    }
+                    return;
+                }
+
+                TokenType currTokenType = currToken.getType();
+                if (currTokenType == TokenType.RPAREN) {
+                    if (numOpenParen > 0) {
+                        tokenSource.getNextToken();
+                        --numOpenParen;
+                        if (listener != null) {
+                            listener.operator(currToken, currTokenType);
+                        }
+                        continue;
+                    } else {
+                        throw new SyntaxError("Redundant ')'", tokenSource.getCurrLine());
+                    }
+                }
+
+                // Check if the token is a valid binary operator
+                tokenSource.getNextToken();
+                if (!opTable.isOperator(currTokenType) || !opTable.isOperatorBinary(currTokenType)) {
+                    throw new SyntaxError("Invalid binary operator '" + currToken.getValue() + "'",
+                            tokenSource.getCurrLine());
+                }
+                if (listener != null) {
+                    listener.operator(currToken, currTokenType);
+                }
+                currToken = getNextOperandToken(currToken.getValue());
+                break;
+            }
+        }
+    }
+
+    /**
+     * Creates the node of the token at which an operand starts, which is an ID, a number, a unary operator, or '('.
+     *
+     * @param currToken the token, which has already been consumed.
+     * @param scope     scope of the operand.
+     * @return a node that holds the token, or the matching unary operator if the token is a binary operator.
+     * @throws SyntaxError if the token cannot start an operand.
+     */
+    private TokenNode createOperandNode(Token currToken, Block scope) throws SyntaxError {
+        SymbolTable symbolTable = SymbolTable.getInstance();
+        TokenType operandType = getOperandType(currToken);
+        if (operandType == TokenType.ID) {
+            return new TokenNode(currToken, getIDInfo(currToken, scope).getType());
+        } else if (operandType == TokenType.INT) {
+            return new TokenNode(currToken, (TypeInfo) symbolTable.getType(Global.INT_TYPE_ID));
+        } else if (operandType == TokenType.FLOAT) {
+            return new TokenNode(currToken, (TypeInfo) symbolTable.getType(Global.FLOAT_TYPE_ID));
+        } else if (operandType != currToken.getType()) {
+            return new TokenNode(new Token(currToken.getValue(), operandType, currToken.getOffset()));
+        }
+        return new TokenNode(currToken);
+    }
+
+    /**
+     * Checks the token at which an operand starts, which is an ID, a number, a unary operator, or '('. An ID is not
+     * looked up.
+     *
+     * @param currToken the token, which has already been consumed.
+     * @return the type of the token, or the type of the matching unary operator if the token is a binary operator.
+     * @throws SyntaxError if the token cannot start an operand.
+     */
+    private TokenType getOperandType(Token currToken) throws SyntaxError {
+        TokenType currTokenType = currToken.getType();
+        if (currTokenType == TokenType.ID || currTokenType == TokenType.INT || currTokenType == TokenType.FLOAT ||
+                currTokenType == TokenType.LPAREN) {
+            return currTokenType;
+        }
+
+        // Check if the operand starts with a binary operator
+        OperatorTable opTable = OperatorTable.getInstance();
+        if (!opTable.isOperator(currTokenType) || !opTable.isOperatorBinary(currTokenType)) {
+            throw new SyntaxError("Invalid expression syntax at '" + currToken.getValue() + "'",
+                    tokenSource.getCurrLine());
+        }
+        // Try to map the binary operator to a unary operator since a token can be both a binary or a unary operator
+        // For example, '+' and '-'
+        TokenType unaryOpTokenType = opTable.mapBinaryToUnaryOperator(currTokenType);
+        if (unaryOpTokenType == null) {
+            throw new SyntaxError("Invalid unary operator '" + currToken.getValue() + "'", tokenSource.getCurrLine());
+        }
+        return unaryOpTokenType;
+    }
+
+    /**
+     * Looks up the variable of an ID token in the declarations of the parser and then in the symbol table.
+     *
+     * @param idToken the ID token.
+     * @param scope   scope of the ID.
+     * @return the variable.
+     * @throws SyntaxError if the ID is not a declared variable.
+     */
+    private IDInfo getIDInfo(Token idToken, Block scope) throws SyntaxError {
+        IDInfo idInfo = declarations.getID(idToken.getValue(), scope);
+        if (idInfo == null) {
+            throw new SyntaxError("Invalid variable '" + idToken.getValue() + "'", tokenSource.getCurrLine());
+        }
+        return idInfo;
+    }
+
+    /**
+     * Consumes the first token of the operand that must follow a string.
+     *
+     * @param str a string which the operand follows.
+     * @return the first token of the operand.
+     * @throws SyntaxError if the operand is missing.
      * @throws IOException if the read operation causes an IO error.
+     * @throws CancellationError if the cancellation token has tripped.
+     */
+    private Token getNextOperandToken(String str) throws SyntaxError, IOException {
+        // Every operator and '(' is followed by an operand, so the token is checked in all the loops over expressions
+        if (--numUntilCancellationCheck == 0) {
+            numUntilCancellationCheck = CancellationToken.CHECK_INTERVAL;
+            cancellationToken.check();
+        }
+        if (isExpressionEnd(tokenSource.peek(0))) {
+            throw new SyntaxError("Missing a valid expression after '" + str + "'", tokenSource.getCurrLine());
+        }
+        return tokenSource.getNextToken();
+    }
+
+    /**
+     * Determines if a token ends an expression, that is, if it is the end of the input or ';'.
+     *
+     * @param token the token, or null at the end of the input.
+     * @return true if the token ends an expression and false otherwise.
+     */
+    private static boolean isExpressionEnd(Token token) {
+        return token == null || token.getType() == TokenType.SEMICOLON;
+    }
+
+    /**
+     * Assigns the operands of an operator to the operator node, which then replaces them on the operand stack. The
+     * children of a binary operator node are its right operand and then its left operand.
+     *
+     * @param operandNodes the operand stack.
+     * @param opNode       the operator node.
      */
-    private void recurParseExpressionHelper(ArrayList<TokenNode> nodes, Block scope, String str)
-            throws SyntaxError, IOException {
-        // If the size of the list is unchanged, an expression is clearly missing
-        int numNodesBefore = nodes.size();
-        // Recursively parse an expression
-        recurParseExpression(nodes, scope);
-        if (nodes.size() == numNodesBefore) {
-            throw new SyntaxError("Missing a valid expression after '" + str + "'", lexer.getCurrLine());
+    private void reduceOperator(ArrayList<TokenNode> operandNodes, TokenNode opNode) {
+        opNode.addChild(operandNodes.remove(operandNodes.size() - 1));
+        if (OperatorTable.getInstance().isOperatorBinary(opNode.getToken().getType())) {
+            opNode.addChild(operandNodes.remove(operandNodes.size() - 1));
         }
+        operandNodes.add(opNode);
     }
 
     /**
-     * Recursively consumes an expression in a given scope and stores the token nodes in a given list.
+     * Reduces the operators that are left and creates the root of the expression.
+     *
+     * @param operandNodes the operand stack.
+     * @param opNodes      the operator stack, which has no '('.
+     * @return the root node of the AST.
+     */
+    private Node createExpressionRoot(ArrayList<TokenNode> operandNodes, ArrayList<TokenNode> opNodes) {
+        while (!opNodes.isEmpty()) {
+            reduceOperator(operandNodes, opNodes.remove(opNodes.size() - 1));
+        }
+        Node exprRoot = new Node(NodeType.EXPR);
+        exprRoot.addChild(operandNodes.get(0));
+        operandNodes.clear();
+        return exprRoot;
+    }
+
+    /**
+     * Adds the operators that are left to the postfix order and creates the expression.
+     *
+     * @param postfixTokens the tokens in postfix order, which have room for the operators.
+     * @param postfixTypes  the types of the operands in postfix order.
+     * @param size          the number of tokens in postfix order.
+     * @param opTokens      the operator stack, which has no '('.
+     * @return the expression.
+     */
+    private LazyExpression createLazyExpression(Token[] postfixTokens, TypeInfo[] postfixTypes, int size,
+                                                ArrayList<Token> opTokens) {
+        for (int i = opTokens.size() - 1; i >= 0; --i) {
+            postfixTokens[size++] = opTokens.get(i);
+        }
+        opTokens.clear();
+        return new LazyExpression(postfixTokens, postfixTypes, size);
+    }
+
+    /**
+     * Parses and retrieves a list of expression nodes in infix order.
      *
-     * @param nodes a list to store the token nodes.
      * @param scope scope of the expression.
-     * @throws IOException if the read operation causes an IO error.
+     * @return a list of expression nodes in infix order.
      * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
      */
-    private void recurParseExpression(ArrayList<TokenNode> nodes, Block scope) throws SyntaxError, IOException {
+    public ArrayList<TokenNode> getExpressionInfixNodes(Block scope) throws SyntaxError, IOException {
         /*
           Expr = '(' Expr ')' [binary operator] Expr
                = '+/-' Expr [binary operator] Expr
                = term [binary operator] Expr
          */
-
-        Token currToken = lexer.getNextToken();
-        if (currToken == null) {
-            return;
+        ArrayList<TokenNode> nodes = new ArrayList<>();
+        if (isExpressionEnd(tokenSource.peek(0))) {
+            return nodes;
         }
+        Token currToken = tokenSource.getNextToken();
 
-        SymbolTable symbolTable = SymbolTable.getInstance();
         OperatorTable opTable = OperatorTable.getInstance();
-        String currTokenStr = currToken.getValue();
-        TokenType currTokenType = currToken.getType();
-        boolean isOpBinary = opTable.isOperator(currTokenType) && opTable.isOperatorBinary(currTokenType);
-
-        // Check if the expression starts with '(', a binary operator, an ID, or a number
-        if (currTokenType != TokenType.LPAREN && !isOpBinary && currTokenType != TokenType.ID &&
-                currTokenType != TokenType.INT && currTokenType != TokenType.FLOAT) {
-            throw new SyntaxError("Invalid expression syntax at '" + currTokenStr + "'", lexer.getCurrLine());
-        }
-
-        TypeInfo currTokenDataType;
+        int numOpenParen = 0;
 
-        if (currTokenType == TokenType.ID) {
-            // Check if the token is a valid ID
-            IDInfo idInfo = (IDInfo) symbolTable.getID(currTokenStr, scope);
-            if (idInfo == null) {
-                throw new SyntaxError("Invalid variable '" + currTokenStr + "'", lexer.getCurrLine());
-            }
-            // Get the ID's data type
-            currTokenDataType = idInfo.getType();
-            nodes.add(new TokenNode(currToken, currTokenDataType));
-        } else if (currTokenType == TokenType.INT) {
-            // Consume an integer
-            currTokenDataType = (TypeInfo) symbolTable.getType(Global.INT_TYPE_ID);
-            nodes.add(new TokenNode(currToken, currTokenDataType));
-        } else if (currTokenType == TokenType.FLOAT) {
-            // Consume a floating point
-            currTokenDataType = (TypeInfo) symbolTable.getType(Global.FLOAT_TYPE_ID);
-            nodes.add(new TokenNode(currToken, currTokenDataType));
-        } else if (isOpBinary) {
-            // Try to map the binary operator to a unary operator since a token can be both a binary or a unary operator
-            // For example, '+' and '-'
-            TokenType unaryOpTokenType = opTable.mapBinaryToUnaryOperator(currTokenType);
-            if (unaryOpTokenType == null) {
-                throw new SyntaxError("Invalid unary operator '" + currTokenStr + "'", lexer.getCurrLine());
-            }
-            currToken.setType(unaryOpTokenType);
-            nodes.add(new TokenNode(currToken));
-            // Recursively parse an expression
-            recurParseExpressionHelper(nodes, scope, currTokenStr);
-        } else {
-            // Consume '(' and increment the number of parentheses
-            nodes.add(new TokenNode(currToken));
-            ++numParen;
-            // Recursively parse an expression
-            recurParseExpressionHelper(nodes, scope, currTokenStr);
-            // Consume ')' and decrement the number of parentheses
-            currToken = lexer.getNextToken();
-            if (currToken == null || currToken.getType() != TokenType.RPAREN) {
-                throw new SyntaxError("Missing ')'", lexer.getCurrLine());
+        while (true) {
+            // Consume the unary operators and the '(' before an operand, and then the operand
+            TokenNode node = createOperandNode(currToken, scope);
+            TokenType nodeTokenType = node.getToken().getType();
+            nodes.add(node);
+            if (nodeTokenType != TokenType.ID && nodeTokenType != TokenType.INT && nodeTokenType != TokenType.FLOAT) {
+                if (nodeTokenType == TokenType.LPAREN) {
+                    ++numOpenParen;
+                }
+                currToken = getNextOperandToken(currToken.getValue());
+                continue;
             }
-            nodes.add(new TokenNode(currToken));
-            --numParen;
-        }
 
-        currToken = lexer.getNextToken();
+            // Consume the ')' after the operand and then the binary operator, if there is any
+            while (true) {
+                currToken = tokenSource.peek(0);
+                if (isExpressionEnd(currToken)) {
+                    if (numOpenParen > 0) {
+                        throw new SyntaxError("Missing ')'", tokenSource.getCurrLine());
+                    }
+                    return nodes;
+                }
 
-        // Check if the next token is empty or ')'
-        if (currToken == null) {
-            return;
-        }
+                String currTokenStr = currToken.getValue();
+                TokenType currTokenType = currToken.getType();
 
-        currTokenStr = currToken.getValue();
-        currTokenType = currToken.getType();
+                if (currTokenType == TokenType.RPAREN) {
+                    if (numOpenParen > 0) {
+                        tokenSource.getNextToken();
+                        nodes.add(new TokenNode(currToken));
+                        --numOpenParen;
+                        continue;
+                    } else {
+                        throw new SyntaxError("Redundant ')'", tokenSource.getCurrLine());
+                    }
+                }
 
-        if (currTokenType == TokenType.RPAREN) {
-            // Check if ')' is redundant
-            if (numParen > 0) {
-                lexer.putBack(currTokenStr + " ");
-                return;
-            } else {
-                throw new SyntaxError("Redundant ')'", lexer.getCurrLine());
+                // Check if the token is a valid binary operator
+                tokenSource.getNextToken();
+                if (!opTable.isOperator(currTokenType) || !opTable.isOperatorBinary(currTokenType)) {
+                    throw new SyntaxError("Invalid binary operator '" + currTokenStr + "'",
+                            tokenSource.getCurrLine());
+                }
+                nodes.add(new TokenNode(currToken));
+                currToken = getNextOperandToken(currTokenStr);
+                break;
             }
         }
-
-        // Check if the token is a valid binary operator
-        isOpBinary = opTable.isOperator(currTokenType) && opTable.isOperatorBinary(currTokenType);
-
-        if (!isOpBinary) {
-            throw new SyntaxError("Invalid binary operator '" + currTokenStr + "'", lexer.getCurrLine());
-        }
-        nodes.add(new TokenNode(currToken));
-
-        // Recursively parse an expression
-        recurParseExpressionHelper(nodes, scope, currTokenStr);
     }
 
     /**
@@ -194,7 +603,8 @@ public class ExpressionParser {
     public ArrayList<TokenNode> getPostfixOrder(ArrayList<TokenNode> nodes) {
         OperatorTable opTable = OperatorTable.getInstance();
         ArrayList<TokenNode> postfixNodes = new ArrayList<>();
-        ArrayDeque<TokenNode> opStack = new ArrayDeque<>();
+        ArrayDeque<TokenNode> opStack = nodeStack;
+        opStack.clear();
         TokenNode opNode;
         Token currToken;
         TokenType currTokenType, opTokenType;
@@ -261,7 +671,8 @@ public class ExpressionParser {
             return null;
         }
 
-        ArrayDeque<TokenNode> tempStack = new ArrayDeque<>();
+        ArrayDeque<TokenNode> tempStack = nodeStack;
+        tempStack.clear();
         Token currToken;
         TokenType currTokenType;
         TokenNode operandNode1;
@@ -295,6 +706,7 @@ public class ExpressionParser {
         // If everything works correctly and postfix list is not empty, the temp stack should have one last node
         Node exprRoot = new Node(NodeType.EXPR);
         exprRoot.addChild(tempStack.removeLast());
+        tempStack.clear();
         return exprRoot;
     }
 }
@@ -0,0 +1,537 @@
+package ParserSpace;
+
+import Operators.OperatorTable;
+import Symbols.TypeInfo;
+import Utilities.NumberToken;
+import Utilities.Token;
+import Utilities.TokenType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * A store of ASTs whose nodes are kept in parallel arrays rather than as objects, which takes several times less memory
+ * for a large program. A node is addressed by an int handle, and has a kind, the index of its token, the id of its
+ * type, and the handles of its first child and of its next sibling. Tokens are kept in the same way, by their types,
+ * offsets, values and texts, with each distinct text kept once.
+ *
+ * <p>The nodes of each tree are stored in preorder, so that the subtree of a node is the range of handles from the node
+ * to the end of its subtree and can be scanned linearly. A null child of a node, such as the missing expression of a
+ * statement, is kept as an absent node so that the children keep their indices.
+ *
+ * <p>getNode returns a read-only Node view of a node, through which the visitors of ASTTraversal can visit the trees.
+ * The views and their tokens are created on demand.
+ */
+public class FlatAST {
+    public static final int NONE = -1;
+    private static final int INIT_CAPACITY = 64;
+    private static final NodeType[] NODE_TYPES = NodeType.values();
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+    // Kind of a null child
+    private static final byte ABSENT = -1;
+
+    // Nodes: ordinal of the node type or ABSENT, index of the token or NONE, id of the type or NONE, and handles
+    private byte[] kinds = new byte[INIT_CAPACITY];
+    private int[] tokenIndices = new int[INIT_CAPACITY];
+    private int[] typeIds = new int[INIT_CAPACITY];
+    private int[] firstChildren = new int[INIT_CAPACITY];
+    private int[] nextSiblings = new int[INIT_CAPACITY];
+    private int size = 0;
+
+    // Tokens: ordinal of the token type, offset, id of the text, and value bits of a numeric literal
+    private byte[] tokenTypes = new byte[INIT_CAPACITY];
+    private int[] tokenOffsets = new int[INIT_CAPACITY];
+    private int[] tokenTextIds = new int[INIT_CAPACITY];
+    private long[] tokenValues = new long[INIT_CAPACITY];
+    private final BitSet numberTokens = new BitSet();
+    private int numTokens = 0;
+
+    private final ArrayList<String> texts = new ArrayList<>();
+    private final HashMap<String, Integer> textIds = new HashMap<>();
+    private final ArrayList<TypeInfo> types = new ArrayList<>();
+    private int[] roots = new int[INIT_CAPACITY];
+    private int numRoots = 0;
+
+    /**
+     * Adds a tree to the store. The nodes are copied, so the tree can be discarded afterward.
+     *
+     * @param root the root of the tree.
+     * @return the handle of the root, or NONE if the root is null, in which case nothing is added.
+     */
+    public int add(Node root) {
+        if (root == null) {
+            return NONE;
+        }
+        int rootHandle = addNode(root);
+        addRoot(rootHandle);
+
+        // The nodes on the path from the root, with the index of the next child to copy and the handle of the last
+        // copied child of each of them
+        ArrayList<Node> path = new ArrayList<>();
+        int[] pathHandles = new int[INIT_CAPACITY];
+        int[] nextChildIndices = new int[INIT_CAPACITY];
+        int[] lastChildren = new int[INIT_CAPACITY];
+        path.add(root);
+        pathHandles[0] = rootHandle;
+        lastChildren[0] = NONE;
+
+        while (!path.isEmpty()) {
+            int depth = path.size() - 1;
+            Node currNode = path.get(depth);
+            if (nextChildIndices[depth] == currNode.getNumChildren()) {
+                path.remove(depth);
+                continue;
+            }
+            Node child = currNode.getChild(nextChildIndices[depth]++);
+            int childHandle = addNode(child);
+            if (lastChildren[depth] == NONE) {
+                firstChildren[pathHandles[depth]] = childHandle;
+            } else {
+                nextSiblings[lastChildren[depth]] = childHandle;
+            }
+            lastChildren[depth] = childHandle;
+            if (child != null && child.getNumChildren() > 0) {
+                path.add(child);
+                if (path.size() > pathHandles.length) {
+                    pathHandles = Arrays.copyOf(pathHandles, pathHandles.length * 2);
+                    nextChildIndices = Arrays.copyOf(nextChildIndices, nextChildIndices.length * 2);
+                    lastChildren = Arrays.copyOf(lastChildren, lastChildren.length * 2);
+                }
+                pathHandles[depth + 1] = childHandle;
+                nextChildIndices[depth + 1] = 0;
+                lastChildren[depth + 1] = NONE;
+            }
+        }
+        return rootHandle;
+    }
+
+    /**
+     * Adds the tree of an expression to the store without creating its nodes. The tree is the same as the one that
+     * the root of the expression holds.
+     *
+     * @param expr the expression, which is null for an empty expression as parseExpressionLazily returns.
+     * @return the handle of the EXPR root of the tree, or NONE if the expression is null, in which case nothing is
+     * added.
+     */
+    public int add(LazyExpression expr) {
+        if (expr == null) {
+            return NONE;
+        }
+        int exprSize = expr.size();
+        int rootHandle = addNode(NodeType.EXPR, NONE, NONE);
+        addRoot(rootHandle);
+        // The postfix order read backward is the preorder in which the right operand of a binary operator comes first,
+        // as in its children, so the handle of the token at position i is base + (exprSize - 1 - i)
+        int base = size;
+        for (int i = exprSize - 1; i >= 0; --i) {
+            addNode(NodeType.TOKEN, addToken(expr.getToken(i)), getTypeId(expr.getOperandType(i)));
+        }
+        firstChildren[rootHandle] = base;
+
+        // The size of the subtree of each token gives the position of the left operand of a binary operator
+        int[] subtreeSizes = new int[exprSize];
+        for (int i = 0; i < exprSize; ++i) {
+            int handle = base + exprSize - 1 - i;
+            subtreeSizes[i] = 1;
+            if (isOperand(expr.getToken(i).getType())) {
+                continue;
+            }
+            firstChildren[handle] = handle + 1;
+            subtreeSizes[i] += subtreeSizes[i - 1];
+            if (!isOperatorUnary(expr.getToken(i).getType())) {
+                int left = i - 1 - subtreeSizes[i - 1];
+                nextSiblings[handle + 1] = base + exprSize - 1 - left;
+                subtreeSizes[i] += subtreeSizes[left];
+            }
+        }
+        return rootHandle;
+    }
+
+    /**
+     * Determines if a token is an operand, that is, an ID or a number.
+     *
+     * @param tokenType type of the token.
+     * @return true if the token is an operand and false if it is an operator.
+     */
+    private static boolean isOperand(TokenType tokenType) {
+        return tokenType == TokenType.ID || tokenType == TokenType.INT || tokenType == TokenType.FLOAT;
+    }
+
+    /**
+     * Determines if an operator is unary.
+     *
+     * @param tokenType type of the operator.
+     * @return true if the operator is unary and false otherwise.
+     */
+    private static boolean isOperatorUnary(TokenType tokenType) {
+        return OperatorTable.getInstance().isOperatorUnary(tokenType);
+    }
+
+    /**
+     * Appends a copy of a node without its children.
+     *
+     * @param node the node, or null for an absent node.
+     * @return the handle of the copy.
+     */
+    private int addNode(Node node) {
+        if (node == null) {
+            int handle = addNode(NodeType.TOKEN, NONE, NONE);
+            kinds[handle] = ABSENT;
+            return handle;
+        }
+        if (node instanceof TokenNode tokenNode) {
+            return addNode(NodeType.TOKEN, addToken(tokenNode.getToken()), getTypeId(tokenNode.getType()));
+        }
+        return addNode(node.getNodeType(), NONE, NONE);
+    }
+
+    /**
+     * Appends a node without children.
+     *
+     * @param nodeType   type of the node.
+     * @param tokenIndex index of the token of the node, or NONE.
+     * @param typeId     id of the type of the node, or NONE.
+     * @return the handle of the node.
+     */
+    private int addNode(NodeType nodeType, int tokenIndex, int typeId) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            tokenIndices = Arrays.copyOf(tokenIndices, capacity);
+            typeIds = Arrays.copyOf(typeIds, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        }
+        kinds[size] = (byte) nodeType.ordinal();
+        tokenIndices[size] = tokenIndex;
+        typeIds[size] = typeId;
+        firstChildren[size] = NONE;
+        nextSiblings[size] = NONE;
+        return size++;
+    }
+
+    /**
+     * Appends a token.
+     *
+     * @param token the token.
+     * @return the index of the token.
+     */
+    private int addToken(Token token) {
+        if (numTokens == tokenTypes.length) {
+            int capacity = numTokens * 2;
+            tokenTypes = Arrays.copyOf(tokenTypes, capacity);
+            tokenOffsets = Arrays.copyOf(tokenOffsets, capacity);
+            tokenTextIds = Arrays.copyOf(tokenTextIds, capacity);
+            tokenValues = Arrays.copyOf(tokenValues, capacity);
+        }
+        String text = token.getValue();
+        Integer textId = textIds.get(text);
+        if (textId == null) {
+            textId = texts.size();
+            texts.add(text);
+            textIds.put(text, textId);
+        }
+        tokenTypes[numTokens] = (byte) token.getType().ordinal();
+        tokenOffsets[numTokens] = token.getOffset();
+        tokenTextIds[numTokens] = textId;
+        if (token instanceof NumberToken numberToken) {
+            numberTokens.set(numTokens);
+            tokenValues[numTokens] = numberToken.getType() == TokenType.FLOAT ?
+                    Double.doubleToRawLongBits(numberToken.getDoubleValue()) : numberToken.getLongValue();
+        }
+        return numTokens++;
+    }
+
+    /**
+     * Gets the id of a type, which is assigned when the type is first added.
+     *
+     * @param type the type, or null.
+     * @return the id of the type, or NONE if the type is null.
+     */
+    private int getTypeId(TypeInfo type) {
+        if (type == null) {
+            return NONE;
+        }
+        // There are few types, so they are searched linearly
+        for (int i = 0; i < types.size(); ++i) {
+            if (types.get(i) == type) {
+                return i;
+            }
+        }
+        types.add(type);
+        return types.size() - 1;
+    }
+
+    /**
+     * Records the handle of the root of a tree.
+     *
+     * @param handle the handle of the root.
+     */
+    private void addRoot(int handle) {
+        if (numRoots == roots.length) {
+            roots = Arrays.copyOf(roots, numRoots * 2);
+        }
+        roots[numRoots++] = handle;
+    }
+
+    /**
+     * Gets the number of nodes in the store, including absent nodes.
+     *
+     * @return the number of nodes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of trees in the store.
+     *
+     * @return the number of trees.
+     */
+    public int getNumRoots() {
+        return numRoots;
+    }
+
+    /**
+     * Gets the root of a tree, in the order in which the trees have been added.
+     *
+     * @param index index of the tree.
+     * @return the handle of the root.
+     */
+    public int getRoot(int index) {
+        if (index < 0 || index >= numRoots) {
+            throw new IndexOutOfBoundsException("Invalid index for the tree");
+        }
+        return roots[index];
+    }
+
+    /**
+     * Gets the type of a node.
+     *
+     * @param handle the handle of the node.
+     * @return the type of the node, or null if the node is absent.
+     */
+    public NodeType getNodeType(int handle) {
+        byte kind = kinds[checkHandle(handle)];
+        return kind == ABSENT ? null : NODE_TYPES[kind];
+    }
+
+    /**
+     * Gets the type of the token of a node without creating the token.
+     *
+     * @param handle the handle of the node.
+     * @return the type of the token, or null if the node has no token.
+     */
+    public TokenType getTokenType(int handle) {
+        int tokenIndex = tokenIndices[checkHandle(handle)];
+        return tokenIndex == NONE ? null : TOKEN_TYPES[tokenTypes[tokenIndex]];
+    }
+
+    /**
+     * Gets the text of the token of a node without creating the token.
+     *
+     * @param handle the handle of the node.
+     * @return the text of the token, or null if the node has no token.
+     */
+    public String getTokenText(int handle) {
+        int tokenIndex = tokenIndices[checkHandle(handle)];
+        return tokenIndex == NONE ? null : texts.get(tokenTextIds[tokenIndex]);
+    }
+
+    /**
+     * Creates the token of a node, which equals the token of the node that has been added.
+     *
+     * @param handle the handle of the node.
+     * @return the token, or null if the node has no token.
+     */
+    public Token getToken(int handle) {
+        int tokenIndex = tokenIndices[checkHandle(handle)];
+        if (tokenIndex == NONE) {
+            return null;
+        }
+        String text = texts.get(tokenTextIds[tokenIndex]);
+        TokenType tokenType = TOKEN_TYPES[tokenTypes[tokenIndex]];
+        if (numberTokens.get(tokenIndex)) {
+            return new NumberToken(text, tokenType, tokenOffsets[tokenIndex], tokenValues[tokenIndex]);
+        }
+        return new Token(text, tokenType, tokenOffsets[tokenIndex]);
+    }
+
+    /**
+     * Gets the type of a node, which is the type of an operand.
+     *
+     * @param handle the handle of the node.
+     * @return the type, or null if the node has none.
+     */
+    public TypeInfo getType(int handle) {
+        int typeId = typeIds[checkHandle(handle)];
+        return typeId == NONE ? null : types.get(typeId);
+    }
+
+    /**
+     * Gets the first child of a node.
+     *
+     * @param handle the handle of the node.
+     * @return the handle of the first child, or NONE if the node has no children.
+     */
+    public int getFirstChild(int handle) {
+        return firstChildren[checkHandle(handle)];
+    }
+
+    /**
+     * Gets the next sibling of a node.
+     *
+     * @param handle the handle of the node.
+     * @return the handle of the next sibling, or NONE if the node is the last child of its parent or a root.
+     */
+    public int getNextSibling(int handle) {
+        return nextSiblings[checkHandle(handle)];
+    }
+
+    /**
+     * Gets the number of children of a node, including absent children.
+     *
+     * @param handle the handle of the node.
+     * @return the number of children.
+     */
+    public int getNumChildren(int handle) {
+        int numChildren = 0;
+        for (int child = getFirstChild(handle); child != NONE; child = nextSiblings[child]) {
+            ++numChildren;
+        }
+        return numChildren;
+    }
+
+    /**
+     * Gets a child of a node.
+     *
+     * @param handle the handle of the node.
+     * @param index  index of the child.
+     * @return the handle of the child.
+     */
+    public int getChild(int handle, int index) {
+        int child = index >= 0 ? getFirstChild(handle) : NONE;
+        for (int i = 0; i < index && child != NONE; ++i) {
+            child = nextSiblings[child];
+        }
+        if (child == NONE) {
+            throw new IndexOutOfBoundsException("Invalid index for the child node");
+        }
+        return child;
+    }
+
+    /**
+     * Gets the end of the subtree of a node. The subtree holds the handles from the node up to the end, so that it
+     * can be scanned in the order of the handles, which is its preorder.
+     *
+     * @param handle the handle of the node.
+     * @return the handle after the last node of the subtree.
+     */
+    public int getSubtreeEnd(int handle) {
+        int last = checkHandle(handle);
+        // The last node in preorder is found by following the last children
+        while (firstChildren[last] != NONE) {
+            last = firstChildren[last];
+            while (nextSiblings[last] != NONE) {
+                last = nextSiblings[last];
+            }
+        }
+        return last + 1;
+    }
+
+    /**
+     * Gets a read-only view of a node, which can be traversed like the node that has been added. A view is created
+     * for every call, and so is every child and token that is requested from it.
+     *
+     * @param handle the handle of the node.
+     * @return the view, or null if the node is absent.
+     */
+    public Node getNode(int handle) {
+        byte kind = kinds[checkHandle(handle)];
+        if (kind == ABSENT) {
+            return null;
+        }
+        if (tokenIndices[handle] != NONE) {
+            return new TokenNodeView(this, handle);
+        }
+        return new NodeView(this, handle, NODE_TYPES[kind]);
+    }
+
+    /**
+     * Checks that a handle refers to a node of the store.
+     *
+     * @param handle the handle.
+     * @return the handle.
+     */
+    private int checkHandle(int handle) {
+        if (handle < 0 || handle >= size) {
+            throw new IndexOutOfBoundsException("Invalid handle for the node");
+        }
+        return handle;
+    }
+
+    /**
+     * A read-only view of a node without a token.
+     */
+    private static class NodeView extends Node {
+        private final FlatAST ast;
+        private final int handle;
+
+        public NodeView(FlatAST ast, int handle, NodeType nodeType) {
+            super(nodeType);
+            this.ast = ast;
+            this.handle = handle;
+        }
+
+        @Override
+        public Node getChild(int index) {
+            return ast.getNode(ast.getChild(handle, index));
+        }
+
+        @Override
+        public void addChild(Node child) {
+            throw new UnsupportedOperationException("Cannot change a view of a flat AST");
+        }
+
+        @Override
+        public int getNumChildren() {
+            return ast.getNumChildren(handle);
+        }
+    }
+
+    /**
+     * A read-only view of a node with a token.
+     */
+    private static class TokenNodeView extends TokenNode {
+        private final FlatAST ast;
+        private final int handle;
+
+        public TokenNodeView(FlatAST ast, int handle) {
+            super(ast.getToken(handle), ast.getType(handle));
+            this.ast = ast;
+            this.handle = handle;
+        }
+
+        @Override
+        public Node getChild(int index) {
+            return ast.getNode(ast.getChild(handle, index));
+        }
+
+        @Override
+        public void addChild(Node child) {
+            throw new UnsupportedOperationException("Cannot change a view of a flat AST");
+        }
+
+        @Override
+        public int getNumChildren() {
+            return ast.getNumChildren(handle);
+        }
+
+        @Override
+        public void setType(TypeInfo type) {
+            throw new UnsupportedOperationException("Cannot change a view of a flat AST");
+        }
+    }
+}
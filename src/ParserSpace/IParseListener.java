@@ -0,0 +1,43 @@
+package ParserSpace;
+
+import Utilities.Token;
+import Utilities.TokenType;
+
+/**
+ * A listener of the events of a validation, which checks the syntax without building an AST. The events of a
+ * statement are reported in the order of its tokens, and every method does nothing by default.
+ */
+public interface IParseListener {
+    /**
+     * Called when a statement starts, once its kind is known.
+     *
+     * @param statementType MUTABLE_ID_DECL for a declaration, ID_REASSIGNMENT for a reassignment, or EXPR for an
+     *                      expression.
+     * @param idToken       the declared or reassigned ID, or null for an expression.
+     */
+    default void enterStatement(NodeType statementType, Token idToken) {
+    }
+
+    /**
+     * Called for each operand of an expression, which is an ID or a number.
+     *
+     * @param token the operand.
+     */
+    default void operand(Token token) {
+    }
+
+    /**
+     * Called for each operator of an expression, including '(' and ')'.
+     *
+     * @param token  the operator.
+     * @param opType type of the operator, which is the type of the matching unary operator for a unary '+' or '-'.
+     */
+    default void operator(Token token, TokenType opType) {
+    }
+
+    /**
+     * Called when a statement has been checked, before its ';'.
+     */
+    default void exitStatement() {
+    }
+}
@@ -0,0 +1,223 @@
+package ParserSpace;
+
+import Operators.OperatorTable;
+import Symbols.TypeInfo;
+import Utilities.Token;
+import Utilities.TokenType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A parsed expression that is kept as its tokens in postfix order, with the type of every operand, rather than as an
+ * AST. The type, the IDs and the fingerprint of the expression are found from the tokens, and the nodes of the AST
+ * are only created the first time that the root is requested.
+ *
+ * <p>The tokens are those that getPostfixOrder returns, so a unary '+' or '-' has the type of the unary operator and
+ * there is no parenthesis. Since every operator has a fixed number of operands, the postfix order alone determines
+ * the AST.
+ */
+public class LazyExpression {
+    private final Token[] tokens;
+    // Type of the operand at each position, or null for an operator
+    private final TypeInfo[] types;
+    private final int size;
+    private Node root;
+
+    /**
+     * Creates an expression from its tokens in postfix order. The arrays are kept as they are and must not be changed
+     * afterward.
+     *
+     * @param tokens the tokens in postfix order.
+     * @param types  type of the operand at each position, or null for an operator.
+     * @param size   the number of tokens, which is positive.
+     */
+    LazyExpression(Token[] tokens, TypeInfo[] types, int size) {
+        this.tokens = tokens;
+        this.types = types;
+        this.size = size;
+    }
+
+    /**
+     * Creates an expression from a list of nodes in postfix order, such as the one that getPostfixOrder returns. The
+     * nodes are not kept, only their tokens and their types.
+     *
+     * @param postfixNodes a list of nodes in postfix order.
+     * @return the expression, or null if the list is empty.
+     */
+    public static LazyExpression of(ArrayList<TokenNode> postfixNodes) {
+        if (postfixNodes.isEmpty()) {
+            return null;
+        }
+        int size = postfixNodes.size();
+        Token[] tokens = new Token[size];
+        TypeInfo[] types = new TypeInfo[size];
+        for (int i = 0; i < size; ++i) {
+            TokenNode node = postfixNodes.get(i);
+            tokens[i] = node.getToken();
+            types[i] = node.getType();
+        }
+        return new LazyExpression(tokens, types, size);
+    }
+
+    /**
+     * Gets the number of tokens in the expression, which is the number of its operands and operators.
+     *
+     * @return the number of tokens.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets a token of the expression in postfix order.
+     *
+     * @param index position of the token.
+     * @return the token.
+     */
+    public Token getToken(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Invalid index for the token");
+        }
+        return tokens[index];
+    }
+
+    /**
+     * Gets the type of an operand of the expression in postfix order.
+     *
+     * @param index position of the token.
+     * @return the type of the operand, or null if the token is an operator.
+     */
+    TypeInfo getOperandType(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Invalid index for the token");
+        }
+        return types[index];
+    }
+
+    /**
+     * Gets the token of the root of the expression, which is its last operator or its only operand.
+     *
+     * @return the token of the root.
+     */
+    public Token getRootToken() {
+        return tokens[size - 1];
+    }
+
+    /**
+     * Gets the type of the expression. The operators do not convert between types, so the type is only known when all
+     * the operands have the same type.
+     *
+     * @return the type of the operands if they all have the same type and null otherwise.
+     */
+    public TypeInfo getType() {
+        TypeInfo type = null;
+        for (int i = 0; i < size; ++i) {
+            if (types[i] != null) {
+                if (type == null) {
+                    type = types[i];
+                } else if (types[i] != type) {
+                    return null;
+                }
+            }
+        }
+        return type;
+    }
+
+    /**
+     * Gets the IDs that the expression uses.
+     *
+     * @return the names of the IDs in the order of their first use in postfix order.
+     */
+    public Set<String> getIDs() {
+        Set<String> ids = new LinkedHashSet<>();
+        for (int i = 0; i < size; ++i) {
+            if (tokens[i].getType() == TokenType.ID) {
+                ids.add(tokens[i].getValue());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Gets a fingerprint of the expression. Expressions whose ASTs are equal node by node have the same fingerprint,
+     * and different ASTs have different fingerprints unless they collide in 64 bits.
+     *
+     * @return the fingerprint.
+     */
+    public long getFingerprint() {
+        // FNV-1a over the types of the tokens and the texts of the operands, the operators are known by their types
+        // Every character of a text is hashed on its own, and the length keeps the texts of the operands apart
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < size; ++i) {
+            TokenType tokenType = tokens[i].getType();
+            hash = (hash ^ tokenType.ordinal()) * 0x100000001b3L;
+            if (isOperand(tokenType)) {
+                String value = tokens[i].getValue();
+                hash = (hash ^ value.length()) * 0x100000001b3L;
+                for (int j = 0; j < value.length(); ++j) {
+                    hash = (hash ^ value.charAt(j)) * 0x100000001b3L;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Gets the root of the AST of the expression, which is built the first time that it is requested. The AST is the
+     * same as the one that buildASTFromPostFix builds.
+     *
+     * @return the EXPR root node of the AST.
+     */
+    public Node getRoot() {
+        if (root == null) {
+            root = buildAST();
+        }
+        return root;
+    }
+
+    /**
+     * Determines if the AST has been built.
+     *
+     * @return true if the root has been requested and false otherwise.
+     */
+    public boolean isMaterialized() {
+        return root != null;
+    }
+
+    /**
+     * Builds the AST from the tokens. The children of a binary operator node are its right operand and then its left
+     * operand.
+     *
+     * @return the EXPR root node of the AST.
+     */
+    private Node buildAST() {
+        OperatorTable opTable = OperatorTable.getInstance();
+        ArrayDeque<TokenNode> tempStack = new ArrayDeque<>();
+        for (int i = 0; i < size; ++i) {
+            TokenNode node = new TokenNode(tokens[i], types[i]);
+            if (!isOperand(tokens[i].getType())) {
+                node.addChild(tempStack.removeLast());
+                if (opTable.isOperatorBinary(tokens[i].getType())) {
+                    node.addChild(tempStack.removeLast());
+                }
+            }
+            tempStack.add(node);
+        }
+        Node exprRoot = new Node(NodeType.EXPR);
+        exprRoot.addChild(tempStack.removeLast());
+        return exprRoot;
+    }
+
+    /**
+     * Determines if a token is an operand, that is, an ID or a number.
+     *
+     * @param tokenType type of the token.
+     * @return true if the token is an operand and false if it is an operator.
+     */
+    private static boolean isOperand(TokenType tokenType) {
+        return tokenType == TokenType.ID || tokenType == TokenType.INT || tokenType == TokenType.FLOAT;
+    }
+}
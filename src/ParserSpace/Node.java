@@ -6,26 +6,35 @@ import java.util.ArrayList;
 
 public class Node {
 
+    // Most nodes have at most two children, so the list is created when the first child is added
+    private static final int INIT_NUM_CHILDREN = 2;
     private final NodeType nodeType;
-    private final ArrayList<Node> children = new ArrayList<>();
+    private ArrayList<Node> children;
 
     public Node(NodeType nodeType) {
         this.nodeType = nodeType;
     }
 
+    public NodeType getNodeType() {
+        return nodeType;
+    }
+
     public Node getChild(int index) {
-        if (index < 0 || index >= children.size()) {
+        if (index < 0 || index >= getNumChildren()) {
             throw new IndexOutOfBoundsException("Invalid index for the child node");
         }
         return children.get(index);
     }
 
     public void addChild(Node child) {
+        if (children == null) {
+            children = new ArrayList<>(INIT_NUM_CHILDREN);
+        }
         children.add(child);
     }
 
     public int getNumChildren() {
-        return children.size();
+        return children == null ? 0 : children.size();
     }
 
     @Override
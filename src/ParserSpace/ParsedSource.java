@@ -0,0 +1,552 @@
+package ParserSpace;
+
+import Exceptions.CancellationError;
+import Exceptions.SyntaxError;
+import LexerSpace.TokenStream;
+import ParserSpace.StatementSequence.Entry;
+import Symbols.Declarations;
+import Symbols.IDInfo;
+import Utilities.Block;
+import Utilities.CancellationToken;
+import Utilities.TokenType;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A source that is parsed statement by statement and that can be edited without parsing it again from scratch. The
+ * source is split right after each ';', which no token contains, so every statement is lexed and parsed on its own.
+ * An edit only lexes and parses again the statements that it touches and the statements after them that use a
+ * variable whose declaration the edit adds, removes or changes. The other statements keep their text, their AST and
+ * their syntax error as they are, so the offsets of the tokens in the AST of a statement are relative to the start of
+ * the statement.
+ *
+ * <p>A statement only sees the variables declared by the statements before it, as if the whole source were parsed
+ * from scratch. The variables declared by the statements are kept by the parsed source rather than added to the
+ * symbol table, so that they are discarded with it.
+ *
+ * <p>The statements are kept in a sequence with the sums of their lengths and of their line breaks, so that the
+ * statements touched by an edit are found, and replaced by as many statements as the edit leaves, in a logarithmic
+ * time. The declarations refer to the entries of their statements rather than to their indices, and every variable
+ * has an index of the statements that contain its ID, so that neither has to be updated for the statements after the
+ * edit, and the statements that depend on a changed declaration are found without checking every statement.
+ *
+ * <p>A parse or an edit may be given a cancellation token, which is checked every CHECK_INTERVAL statements and by the
+ * lexer and the parser of each statement. A cancelled edit leaves the statements partly parsed, so the parsed source
+ * must then be discarded.
+ */
+public class ParsedSource {
+    private final Block scope;
+    // Every statement ends with ';' except the last one, which holds the rest of the source and may be empty
+    private final StatementSequence<Statement> statements = new StatementSequence<>();
+    // Variables declared by the statements without syntax errors, by name
+    private final HashMap<String, Declaration> declarations = new HashMap<>();
+    // Entries of the statements that contain the ID of each variable, by name
+    private final HashMap<String, Set<Entry<Statement>>> users = new HashMap<>();
+    private final StatementDeclarations statementDeclarations = new StatementDeclarations();
+    // Index of the statement being parsed and the variable that it declares
+    private int parsingIndex;
+    private IDInfo declaredID;
+    // Token of the parse or the edit being applied
+    private CancellationToken cancellationToken = CancellationToken.NONE;
+    private int numUntilCancellationCheck = CancellationToken.CHECK_INTERVAL;
+    private boolean isCancelled = false;
+
+    /**
+     * A statement with its text, which includes the spaces before it and its ';', and the result of parsing it. The
+     * line of its syntax error is counted from the first line of its text. The statement also keeps the variable that
+     * it declares, if it has no syntax error, and the names of the IDs that it contains.
+     */
+    private record Statement(String text, Node root, SyntaxError syntaxError, IDInfo declaredID, Set<String> ids) {
+    }
+
+    /**
+     * A variable with the entry of the statement that declares it.
+     */
+    private record Declaration(IDInfo idInfo, Entry<Statement> statement) {
+    }
+
+    /**
+     * The declarations seen by the statement being parsed, which are the variables declared by the statements before
+     * it. A variable declared by the statement is kept aside until the statement has been parsed without errors.
+     */
+    private class StatementDeclarations extends Declarations {
+        @Override
+        protected IDInfo getDeclaredID(String idStr, Block scope) {
+            Declaration declaration = declarations.get(idStr);
+            if (declaration == null || !declaration.idInfo().getScope().equals(scope) ||
+                    statements.indexOf(declaration.statement()) >= parsingIndex) {
+                return null;
+            }
+            return declaration.idInfo();
+        }
+
+        @Override
+        public void declare(IDInfo idInfo) {
+            declaredID = idInfo;
+        }
+    }
+
+    private ParsedSource(Block scope) {
+        this.scope = scope;
+    }
+
+    /**
+     * Parses a whole source.
+     *
+     * @param text  the text of the source.
+     * @param scope scope of the statements.
+     * @return the parsed source.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    public static ParsedSource parse(CharSequence text, Block scope) throws IOException {
+        return parse(text, scope, CancellationToken.NONE);
+    }
+
+    /**
+     * Parses a whole source, checking a cancellation token as the statements are parsed.
+     *
+     * @param text              the text of the source.
+     * @param scope             scope of the statements.
+     * @param cancellationToken the token through which parsing is cancelled.
+     * @return the parsed source.
+     * @throws IOException if the read operation causes an IO error.
+     * @throws CancellationError if the cancellation token has tripped.
+     */
+    public static ParsedSource parse(CharSequence text, Block scope, CancellationToken cancellationToken)
+            throws IOException {
+        ParsedSource parsedSource = new ParsedSource(scope);
+        parsedSource.cancellationToken = cancellationToken;
+        parsedSource.replaceStatements(0, -1, splitStatements(text.toString(), true));
+        parsedSource.cancellationToken = CancellationToken.NONE;
+        return parsedSource;
+    }
+
+    /**
+     * Applies an edit of the text to the parsed source. The source is updated in place, and only the statements that
+     * overlap the edit and the statements that depend on the declarations that it changes are lexed and parsed again.
+     * The others keep their nodes.
+     *
+     * @param offset        offset of the edit in the text.
+     * @param removedLength number of characters removed at the offset.
+     * @param insertedText  text inserted at the offset.
+     * @return this parsed source after the edit.
+     * @throws IOException if the read operation causes an IO error.
+     * @throws IllegalStateException if an earlier edit has been cancelled.
+     */
+    public ParsedSource edit(int offset, int removedLength, CharSequence insertedText) throws IOException {
+        return edit(offset, removedLength, insertedText, CancellationToken.NONE);
+    }
+
+    /**
+     * Applies an edit of the text to the parsed source as edit does, checking a cancellation token as the statements
+     * are parsed again. If the token trips, the parsed source must be discarded.
+     *
+     * @param offset            offset of the edit in the text.
+     * @param removedLength     number of characters removed at the offset.
+     * @param insertedText      text inserted at the offset.
+     * @param cancellationToken the token through which parsing is cancelled.
+     * @return this parsed source after the edit.
+     * @throws IOException if the read operation causes an IO error.
+     * @throws CancellationError if the cancellation token has tripped.
+     * @throws IllegalStateException if an earlier edit has been cancelled.
+     */
+    public ParsedSource edit(int offset, int removedLength, CharSequence insertedText,
+                             CancellationToken cancellationToken) throws IOException {
+        if (isCancelled) {
+            throw new IllegalStateException("An earlier edit of the parsed source has been cancelled");
+        }
+        int length = statements.getLength();
+        if (offset < 0 || removedLength < 0 || removedLength > length - offset) {
+            throw new IndexOutOfBoundsException("Invalid range for the edit");
+        }
+
+        // Find the statements that contain the first and the last removed characters
+        int first = findStatement(offset);
+        int last = removedLength > 0 ? findStatement(offset + removedLength - 1) : first;
+        int regionStart = statements.getOffset(first);
+        StringBuilder region = new StringBuilder();
+        for (int i = first; i <= last; ++i) {
+            region.append(getText(i));
+        }
+        region.replace(offset - regionStart, offset + removedLength - regionStart, insertedText.toString());
+        // If the ';' that ended the region has been removed, the next statement now continues the region
+        if (last < statements.size() - 1 && (region.isEmpty() || region.charAt(region.length() - 1) != ';')) {
+            region.append(getText(++last));
+        }
+        List<String> texts = splitStatements(region.toString(), last == statements.size() - 1);
+
+        // Unchanged statements at both ends of the region are reused
+        int numOld = last - first + 1;
+        int numPrefix = 0;
+        while (numPrefix < Math.min(numOld, texts.size()) && getText(first + numPrefix).equals(texts.get(numPrefix))) {
+            ++numPrefix;
+        }
+        int numSuffix = 0;
+        while (numSuffix < Math.min(numOld, texts.size()) - numPrefix &&
+                getText(last - numSuffix).equals(texts.get(texts.size() - 1 - numSuffix))) {
+            ++numSuffix;
+        }
+        first += numPrefix;
+        last -= numSuffix;
+        texts = texts.subList(numPrefix, texts.size() - numSuffix);
+
+        this.cancellationToken = cancellationToken;
+        try {
+            Set<String> changedIDs = replaceStatements(first, last, texts);
+            reparseDependents(first + texts.size(), changedIDs);
+        } catch (CancellationError e) {
+            // The statements parsed so far do not match the declarations of the others
+            isCancelled = true;
+            throw e;
+        } finally {
+            this.cancellationToken = CancellationToken.NONE;
+        }
+        return this;
+    }
+
+    /**
+     * Splits a text into statements right after each ';'.
+     *
+     * @param text  the text.
+     * @param isEnd whether the text ends the source, in which case the rest after the last ';' is the last statement.
+     * @return the texts of the statements.
+     */
+    private static List<String> splitStatements(String text, boolean isEnd) {
+        ArrayList<String> texts = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); ++i) {
+            if (text.charAt(i) == ';') {
+                texts.add(text.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (isEnd) {
+            texts.add(text.substring(start));
+        }
+        return texts;
+    }
+
+    /**
+     * Replaces a range of the statements with new statements parsed from their texts.
+     *
+     * @param first index of the first replaced statement.
+     * @param last  index of the last replaced statement, which is first - 1 if none is replaced.
+     * @param texts texts of the new statements.
+     * @return the names of the variables whose declarations have been added, removed or changed by the replacement.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    private Set<String> replaceStatements(int first, int last, List<String> texts) throws IOException {
+        // The declarations of the replaced statements are released, so that they can be declared again
+        HashMap<String, IDInfo> releasedIDs = new HashMap<>();
+        for (int i = first; i <= last; ++i) {
+            Entry<Statement> entry = statements.get(i);
+            IDInfo releasedID = releaseDeclaration(entry);
+            if (releasedID != null) {
+                releasedIDs.put(releasedID.getToken().getValue(), releasedID);
+            }
+            removeUses(entry);
+        }
+
+        // The new statements are in the sequence before they are parsed, so that they see the declarations before them
+        ArrayList<Entry<Statement>> newEntries = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            newEntries.add(new Entry<>(null, text.length(), countLineBreaks(text)));
+        }
+        statements.replace(first, last, newEntries);
+
+        HashSet<String> changedIDs = new HashSet<>();
+        for (int i = 0; i < texts.size(); ++i) {
+            Statement statement = parseStatement(newEntries.get(i), texts.get(i), first + i);
+            if (statement.declaredID() != null) {
+                String id = statement.declaredID().getToken().getValue();
+                IDInfo releasedID = releasedIDs.remove(id);
+                // A variable declared again with the same type looks the same to the statements after the range
+                if (releasedID == null || !releasedID.getType().equals(statement.declaredID().getType())) {
+                    changedIDs.add(id);
+                }
+            }
+        }
+        changedIDs.addAll(releasedIDs.keySet());
+        return changedIDs;
+    }
+
+    /**
+     * Parses again the statements from an index that contain the ID of a changed variable. A statement whose
+     * declaration changes in turn has the statements after it that use its variable parsed again. The statements are
+     * found from the index of the IDs, and parsed in order.
+     *
+     * @param from       index of the first statement to be checked.
+     * @param changedIDs the names of the variables whose declarations have changed.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    private void reparseDependents(int from, Set<String> changedIDs) throws IOException {
+        TreeMap<Integer, Entry<Statement>> dependents = new TreeMap<>();
+        for (String id : changedIDs) {
+            addUsers(id, from, dependents);
+        }
+        while (!dependents.isEmpty()) {
+            int index = dependents.firstKey();
+            Entry<Statement> entry = dependents.remove(index);
+            Statement oldStatement = entry.getValue();
+            releaseDeclaration(entry);
+            Statement statement = parseStatement(entry, oldStatement.text(), index);
+            IDInfo oldID = oldStatement.declaredID();
+            IDInfo newID = statement.declaredID();
+            if (oldID != null && (newID == null || !oldID.getType().equals(newID.getType()))) {
+                addUsers(oldID.getToken().getValue(), index + 1, dependents);
+            }
+            if (newID != null && (oldID == null || !newID.getType().equals(oldID.getType()))) {
+                addUsers(newID.getToken().getValue(), index + 1, dependents);
+            }
+        }
+    }
+
+    /**
+     * Adds the statements from an index that contain the ID of a variable to the statements to be parsed again.
+     *
+     * @param id         the name of the variable.
+     * @param from       index of the first statement to be added.
+     * @param dependents the statements to be parsed again by index.
+     */
+    private void addUsers(String id, int from, TreeMap<Integer, Entry<Statement>> dependents) {
+        Set<Entry<Statement>> entries = users.get(id);
+        if (entries == null) {
+            return;
+        }
+        for (Entry<Statement> entry : entries) {
+            int index = statements.indexOf(entry);
+            if (index >= from) {
+                dependents.put(index, entry);
+            }
+        }
+    }
+
+    /**
+     * Counts the line breaks of a text.
+     *
+     * @param text the text.
+     * @return the number of line breaks.
+     */
+    private static int countLineBreaks(String text) {
+        int numLineBreaks = 0;
+        for (int i = 0; i < text.length(); ++i) {
+            if (text.charAt(i) == '\n') {
+                ++numLineBreaks;
+            }
+        }
+        return numLineBreaks;
+    }
+
+    /**
+     * Lexes and parses the text of a statement without its ';', and makes the result the value of the statement's
+     * entry. The statement sees the variables declared by the statements before it, and the variable that it declares
+     * is added to the declarations of the source.
+     *
+     * @param entry the entry of the statement.
+     * @param text  text of the statement.
+     * @param index index of the statement.
+     * @return the parsed statement.
+     * @throws IOException if the read operation causes an IO error.
+     * @throws CancellationError if the cancellation token has tripped.
+     */
+    private Statement parseStatement(Entry<Statement> entry, String text, int index) throws IOException {
+        if (--numUntilCancellationCheck == 0) {
+            numUntilCancellationCheck = CancellationToken.CHECK_INTERVAL;
+            cancellationToken.check();
+        }
+        Statement statement = parseText(entry, text, index);
+        if (entry.getValue() != null) {
+            removeUses(entry);
+        }
+        entry.setValue(statement);
+        for (String id : statement.ids()) {
+            users.computeIfAbsent(id, key -> new HashSet<>()).add(entry);
+        }
+        return statement;
+    }
+
+    /**
+     * Lexes and parses the text of a statement without its ';'.
+     *
+     * @param entry the entry of the statement.
+     * @param text  text of the statement.
+     * @param index index of the statement.
+     * @return the parsed statement.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    private Statement parseText(Entry<Statement> entry, String text, int index) throws IOException {
+        int end = text.endsWith(";") ? text.length() - 1 : text.length();
+        TokenStream tokenStream;
+        try {
+            tokenStream = TokenStream.lex(CharBuffer.wrap(text, 0, end), cancellationToken);
+        } catch (SyntaxError e) {
+            return new Statement(text, null, e, null, Set.of());
+        }
+        HashSet<String> ids = new HashSet<>();
+        for (int i = 0; i < tokenStream.size(); ++i) {
+            if (tokenStream.type(i) == TokenType.ID) {
+                ids.add(tokenStream.text(i));
+            }
+        }
+
+        parsingIndex = index;
+        declaredID = null;
+        try {
+            StatementParser statementParser = new StatementParser(new ExpressionParser(tokenStream));
+            statementParser.setDeclarations(statementDeclarations);
+            statementParser.setCancellationToken(cancellationToken);
+            Node root = statementParser.parseStatement(scope);
+            if (declaredID != null) {
+                // An earlier declaration takes the variable from a later one, which is then parsed again
+                declarations.put(declaredID.getToken().getValue(), new Declaration(declaredID, entry));
+            }
+            return new Statement(text, root, null, declaredID, Set.copyOf(ids));
+        } catch (SyntaxError e) {
+            return new Statement(text, null, e, null, Set.copyOf(ids));
+        }
+    }
+
+    /**
+     * Removes a statement from the index of the IDs.
+     *
+     * @param entry the entry of the statement.
+     */
+    private void removeUses(Entry<Statement> entry) {
+        for (String id : entry.getValue().ids()) {
+            Set<Entry<Statement>> entries = users.get(id);
+            entries.remove(entry);
+            if (entries.isEmpty()) {
+                users.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Removes the variable declared by a statement from the declarations of the source, unless an earlier statement
+     * has taken it.
+     *
+     * @param entry the entry of the statement.
+     * @return the removed variable, or null if there is none.
+     */
+    private IDInfo releaseDeclaration(Entry<Statement> entry) {
+        IDInfo idInfo = entry.getValue().declaredID();
+        if (idInfo == null) {
+            return null;
+        }
+        String id = idInfo.getToken().getValue();
+        Declaration declaration = declarations.get(id);
+        if (declaration == null || declaration.statement() != entry) {
+            return null;
+        }
+        declarations.remove(id);
+        return idInfo;
+    }
+
+    /**
+     * Gets the text of a statement.
+     *
+     * @param index index of the statement.
+     * @return the text of the statement.
+     */
+    private String getText(int index) {
+        return statements.get(index).getValue().text();
+    }
+
+    /**
+     * Finds the statement that contains a character of the text.
+     *
+     * @param offset offset of the character, or the length of the text for the last statement.
+     * @return index of the statement.
+     */
+    private int findStatement(int offset) {
+        return Math.min(statements.find(offset), statements.size() - 1);
+    }
+
+    /**
+     * Gets the number of statements, including the last one after the last ';' even if it is empty.
+     *
+     * @return the number of statements.
+     */
+    public int getNumStatements() {
+        return statements.size();
+    }
+
+    /**
+     * Gets the AST of a statement.
+     *
+     * @param index index of the statement.
+     * @return the root of the AST, or null if the statement is empty or has a syntax error.
+     */
+    public Node getStatement(int index) {
+        return statements.get(index).getValue().root();
+    }
+
+    /**
+     * Gets the offset of a statement in the text, which is where the text after the previous ';' starts.
+     *
+     * @param index index of the statement.
+     * @return the offset of the statement.
+     */
+    public int getOffset(int index) {
+        return statements.getOffset(index);
+    }
+
+    /**
+     * Gets the line at which a statement starts.
+     *
+     * @param index index of the statement.
+     * @return the line of the statement, starting at 1.
+     */
+    public int getLine(int index) {
+        return statements.getNumLineBreaks(index) + 1;
+    }
+
+    /**
+     * Gets the syntax error of a statement, with the line of the error in the whole text.
+     *
+     * @param index index of the statement.
+     * @return the syntax error, or null if the statement has none.
+     */
+    public SyntaxError getSyntaxError(int index) {
+        SyntaxError syntaxError = statements.get(index).getValue().syntaxError();
+        if (syntaxError == null) {
+            return null;
+        }
+        return new SyntaxError(syntaxError.getReason(), syntaxError.getLine() + getLine(index) - 1);
+    }
+
+    /**
+     * Gets the first syntax error in the text.
+     *
+     * @return the first syntax error, or null if there is none.
+     */
+    public SyntaxError getFirstSyntaxError() {
+        ArrayList<Entry<Statement>> entries = statements.getEntries();
+        for (int i = 0; i < entries.size(); ++i) {
+            if (entries.get(i).getValue().syntaxError() != null) {
+                return getSyntaxError(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the whole text of the source.
+     *
+     * @return the text.
+     */
+    public String getText() {
+        StringBuilder text = new StringBuilder();
+        for (Entry<Statement> entry : statements.getEntries()) {
+            text.append(entry.getValue().text());
+        }
+        return text.toString();
+    }
+}
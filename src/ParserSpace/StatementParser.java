@@ -1,23 +1,98 @@
 package ParserSpace;
 
+import Exceptions.CancellationError;
+import Exceptions.Diagnostic;
 import Exceptions.SyntaxError;
-import LexerSpace.Lexer;
+import Exceptions.UncheckedSyntaxError;
+import LexerSpace.ITokenSource;
+import LexerSpace.TokenStream;
+import Operators.OperatorTable;
+import Symbols.Declarations;
+import Symbols.IDInfo;
 import Symbols.SymbolTable;
 import Symbols.TypeInfo;
 import Utilities.Block;
+import Utilities.CancellationToken;
 import Utilities.Token;
 import Utilities.TokenType;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class StatementParser {
+    // Smallest number of statements parsed by each task of a parallel parsing
+    private static final int MIN_STATEMENTS_PER_TASK = 1024;
 
-    private final Lexer lexer;
+    private final ITokenSource tokenSource;
     private final ExpressionParser exprParser;
+    // Type of the variable of the last declaration whose left-hand side has been consumed
+    private TypeInfo declaredIDType;
+    private Declarations declarations = new Declarations();
+    private CancellationToken cancellationToken = CancellationToken.NONE;
+    // Number of statements until the cancellation token is checked
+    private int numUntilCancellationCheck = CancellationToken.CHECK_INTERVAL;
 
     public StatementParser(ExpressionParser exprParser) {
         this.exprParser = exprParser;
-        this.lexer = exprParser.getLexer();
+        this.tokenSource = exprParser.getTokenSource();
+        exprParser.setDeclarations(declarations);
+    }
+
+    /**
+     * Gets the declarations to which the variables declared by parseStatement and validateStatement are added.
+     *
+     * @return the declarations of the parser.
+     */
+    public Declarations getDeclarations() {
+        return declarations;
+    }
+
+    /**
+     * Sets the declarations to which the declared variables are added, for the statement parser and its expression
+     * parser, which look up the variables in them before the symbol table.
+     *
+     * @param declarations the declarations.
+     */
+    public void setDeclarations(Declarations declarations) {
+        this.declarations = declarations;
+        exprParser.setDeclarations(declarations);
+    }
+
+    /**
+     * Sets the token through which parsing is cancelled, for the statement parser and its expression parser. The
+     * token is checked as the statements and their operands are consumed. The token source is not given the token.
+     *
+     * @param cancellationToken the cancellation token.
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+        exprParser.setCancellationToken(cancellationToken);
+    }
+
+    /**
+     * Checks the cancellation token once every CHECK_INTERVAL statements.
+     *
+     * @throws CancellationError if the token has tripped.
+     */
+    private void checkCancellation() {
+        if (--numUntilCancellationCheck == 0) {
+            numUntilCancellationCheck = CancellationToken.CHECK_INTERVAL;
+            cancellationToken.check();
+        }
     }
 
     private boolean isIDValid(String idStr) {
@@ -36,156 +111,694 @@ public class StatementParser {
         return true;
     }
 
+    /**
+     * Consumes the left-hand side of a declaration, whose keyword is the next token.
+     *
+     * @param scope scope of the statement.
+     * @return the root of the assignment, whose only child is the declaration.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
     private Node parseIDDeclaration(Block scope) throws SyntaxError, IOException {
+        Token idToken = consumeIDDeclaration(scope);
+        Node assignmentRoot = new Node(NodeType.ASSIGNMENT);
+        Node idDeclRoot = new Node(NodeType.MUTABLE_ID_DECL);
+        TokenNode idTokenNode = new TokenNode(idToken, declaredIDType);
+        idDeclRoot.addChild(idTokenNode);
+        assignmentRoot.addChild(idDeclRoot);
+        return assignmentRoot;
+    }
+
+    /**
+     * Consumes and checks the left-hand side of a declaration, whose keyword is the next token, without creating its
+     * nodes. The type of the variable is kept as the declared ID type.
+     *
+     * @param scope scope of the statement.
+     * @return the token of the variable's name.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    private Token consumeIDDeclaration(Block scope) throws SyntaxError, IOException {
         /*
         var ID: type = ...;
          */
-        Token currToken = lexer.getNextToken();
-        if (currToken == null) {
-            return null;
-        }
+        tokenSource.getNextToken();
 
-        String currTokenStr = currToken.getValue();
-        TokenType currTokenType = currToken.getType();
-        // Check if the first token is an ID declaration keyword
-        if (currTokenType != TokenType.MUTABLE_ID_DECL) {
-            lexer.putBack(currTokenStr + " ");
-            return null;
-        }
-
-        currToken = lexer.getNextToken();
+        Token currToken = tokenSource.getNextToken();
         // Check if there is an ID name
         if (currToken == null) {
-            throw new SyntaxError("Missing a variable name after the declaration keyword", lexer.getCurrLine());
+            throw new SyntaxError("Missing a variable name after the declaration keyword", tokenSource.getCurrLine());
         }
 
         SymbolTable symbolTable = SymbolTable.getInstance();
-        currTokenStr = currToken.getValue();
+        String currTokenStr = currToken.getValue();
+        TokenType currTokenType = currToken.getType();
+        // The lexer scans keywords, types and operators as such, so only the other tokens can be one of them
+        boolean isScannedAsID = currTokenType == TokenType.ID;
         // Check if the ID is valid
-        if (symbolTable.isID(currTokenStr, scope)) {
-            throw new SyntaxError("Cannot redeclare an existing variable", lexer.getCurrLine());
-        } else if (symbolTable.isKeyword(currTokenStr) || symbolTable.isType(currTokenStr)) {
-            throw new SyntaxError("Cannot use a reserved keyword for a variable name", lexer.getCurrLine());
-        } else if (symbolTable.isOperator(currTokenStr)) {
-            throw new SyntaxError("Cannot use an operator as a variable name", lexer.getCurrLine());
+        if (declarations.isID(currTokenStr, scope)) {
+            throw new SyntaxError("Cannot redeclare an existing variable", tokenSource.getCurrLine());
+        } else if (!isScannedAsID && (symbolTable.isKeyword(currTokenStr) || symbolTable.isType(currTokenStr))) {
+            throw new SyntaxError("Cannot use a reserved keyword for a variable name", tokenSource.getCurrLine());
+        } else if (!isScannedAsID && symbolTable.isOperator(currTokenStr)) {
+            throw new SyntaxError("Cannot use an operator as a variable name", tokenSource.getCurrLine());
         } else if (!isIDValid(currTokenStr)) {
             throw new SyntaxError("A variable name can only consist of alphanumeric characters and underscores",
-                    lexer.getCurrLine());
+                    tokenSource.getCurrLine());
         }
 
         Token idToken = currToken;
         String id = currTokenStr;
-        currToken = lexer.getNextToken();
-        // Check if ';' is missing
+        currToken = tokenSource.getNextToken();
+        // Check if ':' is missing
         if (currToken == null) {
-            throw new SyntaxError("Missing ':' after '" + id + "'", lexer.getCurrLine());
+            throw new SyntaxError("Missing ':' after '" + id + "'", tokenSource.getCurrLine());
         }
 
         currTokenType = currToken.getType();
-        // Check if the token is ';'
-        if (currTokenType != TokenType.SEMICOLON) {
-            throw new SyntaxError("Expected ':' after '" + id + "'", lexer.getCurrLine());
+        // Check if the token is ':'
+        if (currTokenType != TokenType.COLON) {
+            throw new SyntaxError("Expected ':' after '" + id + "'", tokenSource.getCurrLine());
         }
 
-        currToken = lexer.getNextToken();
+        currToken = tokenSource.getNextToken();
         // Check if a type token is missing
         if (currToken == null) {
-            throw new SyntaxError("Missing a variable type for '" + id + "'", lexer.getCurrLine());
+            throw new SyntaxError("Missing a variable type for '" + id + "'", tokenSource.getCurrLine());
         }
 
         currTokenStr = currToken.getValue();
         TypeInfo idDataType = (TypeInfo) symbolTable.getType(currTokenStr);
         // Check if the token is a valid type
         if (idDataType == null) {
-            throw new SyntaxError("Invalid type for '" + id + "'", lexer.getCurrLine());
+            throw new SyntaxError("Invalid type for '" + id + "'", tokenSource.getCurrLine());
         }
 
-        currToken = lexer.getNextToken();
+        currToken = tokenSource.getNextToken();
         // Check if '=' is present
         if (currToken == null) {
-            throw new SyntaxError("Missing '='", lexer.getCurrLine());
+            throw new SyntaxError("Missing '='", tokenSource.getCurrLine());
         }
 
         currTokenStr = currToken.getValue();
         currTokenType = currToken.getType();
         if (currTokenType != TokenType.ASSIGNMENT) {
-            throw new SyntaxError("Expected '=' but instead got '" + currTokenStr + "'", lexer.getCurrLine());
+            throw new SyntaxError("Expected '=' but instead got '" + currTokenStr + "'", tokenSource.getCurrLine());
         }
+        declaredIDType = idDataType;
+        return idToken;
+    }
 
+    /**
+     * Consumes the left-hand side of a reassignment if the next token, which is an ID, starts one.
+     *
+     * @param idToken the next token.
+     * @param scope   scope of the statement.
+     * @return the root of the assignment, whose only child is the reassignment, or null if the tokens are left to the
+     * expression parser.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    private Node parseIDReassignment(Token idToken, Block scope) throws SyntaxError, IOException {
+        if (!consumeIDReassignment(idToken, scope)) {
+            return null;
+        }
         Node assignmentRoot = new Node(NodeType.ASSIGNMENT);
-        Node idDeclRoot = new Node(NodeType.MUTABLE_ID_DECL);
-        TokenNode idTokenNode = new TokenNode(idToken, idDataType);
-        idDeclRoot.addChild(idTokenNode);
-        assignmentRoot.addChild(idDeclRoot);
+        Node idReassignmentRoot = new Node(NodeType.ID_REASSIGNMENT);
+        TokenNode idTokenNode = new TokenNode(idToken);
+        idReassignmentRoot.addChild(idTokenNode);
+        assignmentRoot.addChild(idReassignmentRoot);
         return assignmentRoot;
     }
 
-    private Node parseLHS(Block scope) throws SyntaxError, IOException {
+    /**
+     * Consumes the left-hand side of a reassignment if the next token, which is an ID, starts one, without creating
+     * its nodes.
+     *
+     * @param idToken the next token.
+     * @param scope   scope of the statement.
+     * @return true if the left-hand side has been consumed and false if the tokens are left to the expression parser.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    private boolean consumeIDReassignment(Token idToken, Block scope) throws SyntaxError, IOException {
         /*
-        var ID: type = ...;
         ID = ...;
-        Expression;
          */
-
-        // Try parsing ID declaration
-        // var ID: type = ...;
-        Node assignmentRoot = parseIDDeclaration(scope);
-        if (assignmentRoot != null) {
-            return assignmentRoot;
-        }
-
-        // ID = ...;
-        Token currToken = lexer.getNextToken();
-        // Check if there is a token
-        if (currToken == null) {
-            return null;
-        }
-
-        String currTokenStr = currToken.getValue();
-        SymbolTable symbolTable = SymbolTable.getInstance();
-        String putBackStr = currTokenStr + " ";
         // Check if token is an existing ID
-        if (!symbolTable.isID(currTokenStr, scope)) {
-            lexer.putBack(putBackStr);
-            return null;
+        if (!declarations.isID(idToken.getValue(), scope)) {
+            return false;
         }
 
-        Token idToken = currToken;
-        currToken = lexer.getNextToken();
+        Token currToken = tokenSource.peek(1);
         // Check if '=' is present
         if (currToken == null) {
-            throw new SyntaxError("Expected an assignment or a valid expression", lexer.getCurrLine());
+            throw new SyntaxError("Expected an assignment or a valid expression", tokenSource.getCurrLine());
         }
 
-        currTokenStr = currToken.getValue();
         TokenType currTokenType = currToken.getType();
-        putBackStr += currTokenStr + " ";
-        // If the token is not '=', put back everything that has been read and return
+        // If the token is not '=', the tokens are left to the expression parser
         if (currTokenType != TokenType.ASSIGNMENT) {
-            lexer.putBack(putBackStr);
-            return null;
+            return false;
         }
-
-        assignmentRoot = new Node(NodeType.ASSIGNMENT);
-        Node idReassignmentRoot = new Node(NodeType.ID_REASSIGNMENT);
-        TokenNode idTokenNode = new TokenNode(idToken);
-        idReassignmentRoot.addChild(idTokenNode);
-        assignmentRoot.addChild(idReassignmentRoot);
-        return assignmentRoot;
+        tokenSource.getNextToken();
+        tokenSource.getNextToken();
+        return true;
     }
 
+    /**
+     * Consumes a statement up to its ';', which is not consumed, and produces the root of its AST. A declared variable
+     * is added to the declarations of the parser once its statement has been parsed, so that its initial value cannot
+     * refer to it. The symbol table is left unchanged.
+     *
+     * @param scope scope of the statement.
+     * @return the root of the AST, or null if the statement is empty.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     * @throws CancellationError if the cancellation token has tripped.
+     */
     public Node parseStatement(Block scope) throws SyntaxError, IOException {
-        // Assignment or pure expression
-        Node assignmentRoot = parseIDDeclaration(scope);
-        if (assignmentRoot == null) {
-            assignmentRoot = parseLHS(scope);
+        /*
+        var ID: type = ...;
+        ID = ...;
+        Expression;
+         */
+        checkCancellation();
+        // The kind of the statement is predicted from its first token, and from the second one after an ID
+        Token currToken = tokenSource.peek(0);
+        TokenType currTokenType = currToken != null ? currToken.getType() : null;
+        boolean isIDDeclaration = currTokenType == TokenType.MUTABLE_ID_DECL;
+        Node assignmentRoot = null;
+        if (isIDDeclaration) {
+            assignmentRoot = parseIDDeclaration(scope);
+        } else if (currTokenType == TokenType.ID) {
+            assignmentRoot = parseIDReassignment(currToken, scope);
         }
         Node exprRoot = exprParser.parseExpression(scope);
         if (assignmentRoot == null) {
             return exprRoot;
         }
         assignmentRoot.addChild(exprRoot);
+        if (isIDDeclaration) {
+            TokenNode idTokenNode = (TokenNode) assignmentRoot.getChild(0).getChild(0);
+            declareID(idTokenNode.getToken(), idTokenNode.getType(), scope);
+        }
         return assignmentRoot;
     }
 
+    /**
+     * Consumes a statement up to its ';', which is not consumed, like parseStatement and checks its syntax without
+     * building its AST. The statement is reported to a listener, and a declared variable is added to the declarations
+     * of the parser as by parseStatement.
+     *
+     * @param scope    scope of the statement.
+     * @param listener the listener of the statement, or null.
+     * @return true if there was a statement and false if the statement is empty.
+     * @throws SyntaxError if there is a syntax error, the same as parseStatement would throw.
+     * @throws IOException if the read operation causes an IO error.
+     * @throws CancellationError if the cancellation token has tripped.
+     */
+    public boolean validateStatement(Block scope, IParseListener listener) throws SyntaxError, IOException {
+        checkCancellation();
+        Token currToken = tokenSource.peek(0);
+        TokenType currTokenType = currToken != null ? currToken.getType() : null;
+        Token idToken = null;
+        NodeType statementType = NodeType.EXPR;
+        if (currTokenType == TokenType.MUTABLE_ID_DECL) {
+            idToken = consumeIDDeclaration(scope);
+            statementType = NodeType.MUTABLE_ID_DECL;
+        } else if (currTokenType == TokenType.ID && consumeIDReassignment(currToken, scope)) {
+            idToken = currToken;
+            statementType = NodeType.ID_REASSIGNMENT;
+        } else if (currToken == null || currTokenType == TokenType.SEMICOLON) {
+            return false;
+        }
+
+        if (listener != null) {
+            listener.enterStatement(statementType, idToken);
+        }
+        exprParser.validateExpression(scope, listener);
+        if (statementType == NodeType.MUTABLE_ID_DECL) {
+            declareID(idToken, declaredIDType, scope);
+        }
+        if (listener != null) {
+            listener.exitStatement();
+        }
+        return true;
+    }
+
+    /**
+     * Adds a declared variable to the declarations of the parser.
+     *
+     * @param idToken the token of the variable's name.
+     * @param type    type of the variable.
+     * @param scope   scope of the variable.
+     */
+    private void declareID(Token idToken, TypeInfo type, Block scope) {
+        // Copy the name so that the declarations do not keep the input that the token may slice
+        Token nameToken = new Token(idToken.getValue(), TokenType.ID, idToken.getOffset());
+        declarations.declare(new IDInfo(nameToken, scope, type, true));
+    }
+
+    /**
+     * Consumes a statement and the ';' that ends it, unless the statement ends the input.
+     *
+     * @param scope scope of the statement.
+     * @return the root of the AST, or null if the statement is empty.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    private Node parseStatementAndSeparator(Block scope) throws SyntaxError, IOException {
+        Node statementRoot = parseStatement(scope);
+        parseSeparator();
+        return statementRoot;
+    }
+
+    /**
+     * Consumes the ';' that ends a statement, unless the statement ends the input.
+     *
+     * @throws SyntaxError if the next token is not ';'.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    private void parseSeparator() throws SyntaxError, IOException {
+        Token currToken = tokenSource.getNextToken();
+        if (currToken != null && currToken.getType() != TokenType.SEMICOLON) {
+            throw new SyntaxError("Expected ';' but instead got '" + currToken.getValue() + "'",
+                    tokenSource.getCurrLine());
+        }
+    }
+
+    /**
+     * Parses a whole program lazily, statement by statement. A statement is only parsed when it is pulled from the
+     * iterator, and the parser keeps no reference to it afterward, so that a program read by a lexer from a reader is
+     * parsed in memory that does not grow with the number of statements. The token source may discard the lines of
+     * the statements that have been parsed. Empty statements are skipped, and the variables declared by a statement
+     * are added to the symbol table once it has been parsed.
+     *
+     * <p>The iterator throws an UncheckedSyntaxError if there is a syntax error and an UncheckedIOException if the
+     * read operation causes an IO error. The statements after a syntax error cannot be parsed.
+     *
+     * @param scope scope of the statements.
+     * @return an iterator over the roots of the ASTs of the statements.
+     */
+    public Iterator<Node> parseProgram(Block scope) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    // Skip empty statements
+                    Token currToken = tokenSource.peek(0);
+                    while (currToken != null && currToken.getType() == TokenType.SEMICOLON) {
+                        tokenSource.getNextToken();
+                        currToken = tokenSource.peek(0);
+                    }
+                    return currToken != null;
+                } catch (SyntaxError e) {
+                    throw new UncheckedSyntaxError(e);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public Node next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    Node statementRoot = parseStatementAndSeparator(scope);
+                    tokenSource.releaseLines();
+                    return statementRoot;
+                } catch (SyntaxError e) {
+                    throw new UncheckedSyntaxError(e);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    declarations.commit();
+                }
+            }
+        };
+    }
+
+    /**
+     * Parses a whole program lazily as a sequential stream of statements, like parseProgram.
+     *
+     * @param scope scope of the statements.
+     * @return a stream of the roots of the ASTs of the statements.
+     */
+    public Stream<Node> streamProgram(Block scope) {
+        Spliterator<Node> spliterator = Spliterators.spliteratorUnknownSize(parseProgram(scope),
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Parses a whole program and recovers from its syntax errors, so that all of them are found in a single pass. The
+     * statement with an error is skipped up to its ';', including its invalid tokens if the token source can skip
+     * them, and the parsing resumes at the next statement as if it were the first one. A variable whose declaration
+     * has an error is not declared. Empty statements are skipped, and the declared variables are added to the symbol
+     * table.
+     *
+     * @param scope       scope of the statements.
+     * @param diagnostics the list to which the diagnostics of the syntax errors are added, in order.
+     * @return the roots of the ASTs of the statements without syntax errors, in order.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    public List<Node> parseProgramRecovering(Block scope, List<Diagnostic> diagnostics) throws IOException {
+        ArrayList<Node> roots = new ArrayList<>();
+        while (true) {
+            // The statement is marked so that it can be skipped from its start after an error
+            tokenSource.mark();
+            try {
+                Token currToken = tokenSource.peek(0);
+                if (currToken == null) {
+                    return roots;
+                }
+                if (currToken.getType() == TokenType.SEMICOLON) {
+                    tokenSource.getNextToken();
+                    continue;
+                }
+                roots.add(parseStatementAndSeparator(scope));
+                tokenSource.releaseLines();
+            } catch (SyntaxError e) {
+                diagnostics.add(Diagnostic.of(e));
+                tokenSource.reset();
+                try {
+                    tokenSource.skipStatement();
+                } catch (SyntaxError invalidTokenError) {
+                    // The invalid token cannot be skipped, and its error has already been added
+                    return roots;
+                }
+            } finally {
+                declarations.commit();
+            }
+        }
+    }
+
+    /**
+     * Checks the syntax of a whole program statement by statement without building any AST, which takes less time
+     * and memory than parsing it. The statements are reported to a listener as they are checked, empty statements
+     * are skipped, the declared variables are added to the symbol table, and the token source may discard the lines
+     * of the statements that have been checked.
+     *
+     * @param scope    scope of the statements.
+     * @param listener the listener of the statements, or null.
+     * @throws SyntaxError if there is a syntax error, the same as parseProgram would throw.
+     * @throws IOException if the read operation causes an IO error.
+     */
+    public void validateProgram(Block scope, IParseListener listener) throws SyntaxError, IOException {
+        while (tokenSource.peek(0) != null) {
+            try {
+                validateStatement(scope, listener);
+                parseSeparator();
+                tokenSource.releaseLines();
+            } finally {
+                declarations.commit();
+            }
+        }
+    }
+
+    /**
+     * Parses a whole program in two phases, on the common fork-join pool. See parseProgramParallel with a pool.
+     *
+     * @param tokenStream the tokens of the program, from the cursor of the stream.
+     * @param scope       scope of the statements.
+     * @return the roots of the ASTs of the statements, in order.
+     * @throws SyntaxError if there is a syntax error, the first one in the program if there are several.
+     */
+    public static List<Node> parseProgramParallel(TokenStream tokenStream, Block scope) throws SyntaxError {
+        return parseProgramParallel(tokenStream, scope, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses a whole program in two phases, or sequentially if the pool has no parallelism. See parseProgramParallel
+     * with a number of statements per task.
+     *
+     * @param tokenStream the tokens of the program, from the cursor of the stream.
+     * @param scope       scope of the statements.
+     * @param pool        the pool that runs the parsing tasks.
+     * @return the roots of the ASTs of the statements, in order.
+     * @throws SyntaxError if there is a syntax error, the first one in the program if there are several.
+     */
+    public static List<Node> parseProgramParallel(TokenStream tokenStream, Block scope, ForkJoinPool pool)
+            throws SyntaxError {
+        return parseProgramParallel(tokenStream, scope, pool, CancellationToken.NONE);
+    }
+
+    /**
+     * Parses a whole program in two phases, or sequentially if the pool has no parallelism, checking a cancellation
+     * token in the pre-pass and in every parsing task. See parseProgramParallel with a number of statements per task.
+     *
+     * @param tokenStream       the tokens of the program, from the cursor of the stream.
+     * @param scope             scope of the statements.
+     * @param pool              the pool that runs the parsing tasks.
+     * @param cancellationToken the token through which parsing is cancelled.
+     * @return the roots of the ASTs of the statements, in order.
+     * @throws SyntaxError if there is a syntax error, the first one in the program if there are several.
+     * @throws CancellationError if the cancellation token has tripped.
+     */
+    public static List<Node> parseProgramParallel(TokenStream tokenStream, Block scope, ForkJoinPool pool,
+                                                  CancellationToken cancellationToken) throws SyntaxError {
+        if (pool.getParallelism() > 1) {
+            return parseProgramParallel(tokenStream, scope, pool, MIN_STATEMENTS_PER_TASK, cancellationToken);
+        }
+        // Without parallelism, the pre-pass and the checks of the declarations would only add work
+        ArrayList<Node> roots = new ArrayList<>();
+        parseRemainingStatements(tokenStream, scope, roots, cancellationToken);
+        return roots;
+    }
+
+    /**
+     * Parses a whole program in two phases. A sequential pre-pass splits the tokens into statements at each ';' and
+     * parses the left-hand sides of the declarations, so that the variables are declared in order. The statements are
+     * then parsed in chunks on a fork-join pool against a snapshot of these declarations over the symbol table, which
+     * the tasks only read. The declared variables are added to the symbol table once the tasks are done.
+     *
+     * <p>The ASTs, the syntax error and the symbol table afterward are the same as if the program were parsed by
+     * parseProgram. A statement parsed concurrently sees the variables declared after it, so the statements that use
+     * one of them, like the statement with the first syntax error, are parsed again sequentially from there with the
+     * symbol table that parseProgram would have at that point.
+     *
+     * <p>Keywords, types, operators and variables must not be registered by other threads while the program is
+     * parsed.
+     *
+     * @param tokenStream          the tokens of the program, from the cursor of the stream.
+     * @param scope                scope of the statements.
+     * @param pool                 the pool that runs the parsing tasks.
+     * @param minStatementsPerTask the smallest number of statements parsed by a task.
+     * @param cancellationToken    the token through which parsing is cancelled.
+     * @return the roots of the ASTs of the statements, in order.
+     * @throws SyntaxError if there is a syntax error, the first one in the program if there are several.
+     * @throws CancellationError if the cancellation token has tripped.
+     */
+    static List<Node> parseProgramParallel(TokenStream tokenStream, Block scope, ForkJoinPool pool,
+                                           int minStatementsPerTask, CancellationToken cancellationToken)
+            throws SyntaxError {
+        // Pre-pass: split the statements after each ';', the last statement holds the rest of the tokens
+        int end = tokenStream.size();
+        IntStream.Builder startsBuilder = IntStream.builder();
+        startsBuilder.add(tokenStream.getCursor());
+        for (int i = tokenStream.getCursor(); i < end; ++i) {
+            if (tokenStream.type(i) == TokenType.SEMICOLON) {
+                startsBuilder.add(i + 1);
+            }
+        }
+        int[] statementStarts = startsBuilder.add(end + 1).build().toArray();
+        int numStatements = statementStarts.length - 1;
+
+        // Pre-pass: parse the left-hand sides of the declarations and declare their variables, up to the first error
+        Node[] declarationRoots = new Node[numStatements];
+        int[] exprStarts = new int[numStatements];
+        HashMap<String, Integer> declarationIndices = new HashMap<>();
+        TokenStream prePassStream = tokenStream.view();
+        StatementParser prePassParser = new StatementParser(new ExpressionParser(prePassStream));
+        prePassParser.setCancellationToken(cancellationToken);
+        int numPrePassed = 0;
+        for (; numPrePassed < numStatements; ++numPrePassed) {
+            if (numPrePassed % CancellationToken.CHECK_INTERVAL == 0) {
+                cancellationToken.check();
+            }
+            int start = statementStarts[numPrePassed];
+            exprStarts[numPrePassed] = start;
+            if (start == end || tokenStream.type(start) != TokenType.MUTABLE_ID_DECL) {
+                continue;
+            }
+            prePassStream.setCursor(start);
+            try {
+                Node assignmentRoot = prePassParser.parseIDDeclaration(scope);
+                TokenNode idTokenNode = (TokenNode) assignmentRoot.getChild(0).getChild(0);
+                prePassParser.declareID(idTokenNode.getToken(), idTokenNode.getType(), scope);
+                declarationRoots[numPrePassed] = assignmentRoot;
+                exprStarts[numPrePassed] = prePassStream.getCursor();
+                declarationIndices.put(idTokenNode.getToken().getValue(), numPrePassed);
+            } catch (SyntaxError | IOException e) {
+                // The statement is parsed again sequentially
+                break;
+            }
+        }
+
+        // Parse the statements in chunks, each chunk stops at its first statement that must be parsed sequentially
+        // The tables are set up here so that the tasks only read them
+        SymbolTable.getInstance();
+        OperatorTable.getInstance();
+        Declarations declarations = prePassParser.getDeclarations();
+        Declarations snapshot = declarations.snapshot();
+        ArrayList<ParsingTask> tasks = new ArrayList<>();
+        Node[] statementRoots = new Node[numStatements];
+        int chunkSize = Math.max(minStatementsPerTask, numPrePassed / (4 * pool.getParallelism()) + 1);
+        for (int from = 0; from < numPrePassed; from += chunkSize) {
+            tasks.add(new ParsingTask(tokenStream.view(), scope, from, Math.min(from + chunkSize, numPrePassed),
+                    statementStarts, exprStarts, declarationRoots, declarationIndices, snapshot, statementRoots,
+                    cancellationToken));
+        }
+        if (tasks.size() > 1) {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        } else {
+            tasks.forEach(ParsingTask::compute);
+        }
+        int numParsed = numPrePassed;
+        for (ParsingTask task : tasks) {
+            if (task.numParsed < task.to) {
+                numParsed = task.numParsed;
+                break;
+            }
+        }
+
+        ArrayList<Node> roots = new ArrayList<>();
+        for (int i = 0; i < numParsed; ++i) {
+            if (statementStarts[i] < statementStarts[i + 1] - 1) {
+                roots.add(statementRoots[i]);
+            }
+        }
+        // Only the variables declared by the parsed statements are added to the symbol table
+        for (int i = numParsed; i < numPrePassed; ++i) {
+            if (declarationRoots[i] != null) {
+                Token idToken = ((TokenNode) declarationRoots[i].getChild(0).getChild(0)).getToken();
+                declarations.remove(new IDInfo(idToken, scope, null, true));
+            }
+        }
+        declarations.commit();
+        if (numParsed == numStatements) {
+            tokenStream.setCursor(end);
+            return roots;
+        }
+
+        // Parse the rest sequentially from the symbol table that parseProgram would have there
+        tokenStream.setCursor(statementStarts[numParsed]);
+        parseRemainingStatements(tokenStream, scope, roots, cancellationToken);
+        return roots;
+    }
+
+    /**
+     * Parses the statements from the cursor of a token stream sequentially, as parseProgram.
+     *
+     * @param tokenStream       the tokens of the statements.
+     * @param scope             scope of the statements.
+     * @param roots             the list to which the roots of the ASTs of the statements are added.
+     * @param cancellationToken the token through which parsing is cancelled.
+     * @throws SyntaxError if there is a syntax error.
+     * @throws CancellationError if the cancellation token has tripped.
+     */
+    private static void parseRemainingStatements(TokenStream tokenStream, Block scope, List<Node> roots,
+                                                 CancellationToken cancellationToken) throws SyntaxError {
+        StatementParser statementParser = new StatementParser(new ExpressionParser(tokenStream));
+        statementParser.setCancellationToken(cancellationToken);
+        try {
+            statementParser.parseProgram(scope).forEachRemaining(roots::add);
+        } catch (UncheckedSyntaxError e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * A task that parses a chunk of the statements of a program concurrently with the other chunks. The task is never
+     * serialized.
+     */
+    @SuppressWarnings("serial")
+    private static class ParsingTask extends RecursiveAction {
+        private final StatementParser statementParser;
+        private final TokenStream tokenStream;
+        private final Block scope;
+        private final int from;
+        private final int to;
+        private final int[] statementStarts;
+        private final int[] exprStarts;
+        private final Node[] declarationRoots;
+        private final Map<String, Integer> declarationIndices;
+        private final Node[] statementRoots;
+        // Index of the first statement of the chunk that has not been parsed
+        private int numParsed;
+
+        public ParsingTask(TokenStream tokenStream, Block scope, int from, int to, int[] statementStarts,
+                           int[] exprStarts, Node[] declarationRoots, Map<String, Integer> declarationIndices,
+                           Declarations declarations, Node[] statementRoots, CancellationToken cancellationToken) {
+            this.statementParser = new StatementParser(new ExpressionParser(tokenStream));
+            statementParser.setDeclarations(declarations);
+            statementParser.setCancellationToken(cancellationToken);
+            this.tokenStream = tokenStream;
+            this.scope = scope;
+            this.from = from;
+            this.to = to;
+            this.statementStarts = statementStarts;
+            this.exprStarts = exprStarts;
+            this.declarationRoots = declarationRoots;
+            this.declarationIndices = declarationIndices;
+            this.statementRoots = statementRoots;
+        }
+
+        @Override
+        protected void compute() {
+            for (numParsed = from; numParsed < to; ++numParsed) {
+                if (usesLaterDeclaration(numParsed)) {
+                    return;
+                }
+                try {
+                    statementRoots[numParsed] = parseStatement(numParsed);
+                } catch (SyntaxError | IOException e) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Determines if a statement uses a variable that is declared by the statement or a later one, which the
+         * statement would not see if the program were parsed sequentially.
+         *
+         * @param index index of the statement.
+         * @return true if the statement uses a variable declared from it and false otherwise.
+         */
+        private boolean usesLaterDeclaration(int index) {
+            if (declarationIndices.isEmpty()) {
+                return false;
+            }
+            for (int i = exprStarts[index]; i < statementStarts[index + 1] - 1; ++i) {
+                if (tokenStream.type(i) == TokenType.ID) {
+                    Integer declarationIndex = declarationIndices.get(tokenStream.text(i));
+                    if (declarationIndex != null && declarationIndex >= index) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Parses a statement and its ';'. The left-hand side of a declaration has been parsed by the pre-pass.
+         *
+         * @param index index of the statement.
+         * @return the root of the AST, or null if the statement is empty.
+         * @throws SyntaxError if there is a syntax error.
+         * @throws IOException if the read operation causes an IO error.
+         */
+        private Node parseStatement(int index) throws SyntaxError, IOException {
+            tokenStream.setCursor(exprStarts[index]);
+            Node assignmentRoot = declarationRoots[index];
+            if (assignmentRoot == null) {
+                return statementParser.parseStatementAndSeparator(scope);
+            }
+            assignmentRoot.addChild(statementParser.exprParser.parseExpression(scope));
+            statementParser.parseSeparator();
+            return assignmentRoot;
+        }
+    }
 }
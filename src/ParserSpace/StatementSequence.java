@@ -0,0 +1,351 @@
+package ParserSpace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A sequence of statements kept in a treap, a binary tree ordered by the positions of the statements and balanced by
+ * random priorities. Each entry keeps the number of entries, the length and the line breaks of its subtree, so that an
+ * entry is found by its index or by an offset, the offset and the line of an entry are computed, and a range of
+ * entries is replaced, all in a logarithmic time on average.
+ *
+ * <p>An entry stays the same object for as long as it is in the sequence, so that it can identify its statement while
+ * the statements before it are inserted or removed.
+ *
+ * @param <E> the type of the values of the entries.
+ */
+final class StatementSequence<E> {
+    private Entry<E> root;
+    // The two parts of the last split
+    private Entry<E> splitLeft;
+    private Entry<E> splitRight;
+
+    /**
+     * An entry of the sequence, with a value that can be changed and a length and a number of line breaks that
+     * cannot.
+     *
+     * @param <E> the type of the value.
+     */
+    static final class Entry<E> {
+        private E value;
+        private final int length;
+        private final int numLineBreaks;
+        private final int priority;
+        private Entry<E> left;
+        private Entry<E> right;
+        private Entry<E> parent;
+        // Number of entries, length and line breaks of the subtree rooted at this entry
+        private int size;
+        private int subtreeLength;
+        private int subtreeLineBreaks;
+
+        /**
+         * Creates an entry that is not in a sequence yet.
+         *
+         * @param value         the value of the entry.
+         * @param length        the length of the entry's text.
+         * @param numLineBreaks the number of line breaks in the entry's text.
+         */
+        Entry(E value, int length, int numLineBreaks) {
+            this.value = value;
+            this.length = length;
+            this.numLineBreaks = numLineBreaks;
+            this.priority = ThreadLocalRandom.current().nextInt();
+        }
+
+        public E getValue() {
+            return value;
+        }
+
+        public void setValue(E value) {
+            this.value = value;
+        }
+
+        /**
+         * Gets the hash code of the entry, which is its random priority, so that entries can be kept in hash sets
+         * without computing their identity hash codes. Entries are only equal to themselves.
+         *
+         * @return the hash code.
+         */
+        @Override
+        public int hashCode() {
+            return priority;
+        }
+    }
+
+    private static int size(Entry<?> entry) {
+        return entry != null ? entry.size : 0;
+    }
+
+    private static int subtreeLength(Entry<?> entry) {
+        return entry != null ? entry.subtreeLength : 0;
+    }
+
+    private static int subtreeLineBreaks(Entry<?> entry) {
+        return entry != null ? entry.subtreeLineBreaks : 0;
+    }
+
+    /**
+     * Recomputes the sums of an entry from its children and makes it the parent of its children.
+     *
+     * @param entry the entry.
+     */
+    private static <E> void update(Entry<E> entry) {
+        entry.size = 1 + size(entry.left) + size(entry.right);
+        entry.subtreeLength = entry.length + subtreeLength(entry.left) + subtreeLength(entry.right);
+        entry.subtreeLineBreaks = entry.numLineBreaks + subtreeLineBreaks(entry.left) + subtreeLineBreaks(entry.right);
+        if (entry.left != null) {
+            entry.left.parent = entry;
+        }
+        if (entry.right != null) {
+            entry.right.parent = entry;
+        }
+    }
+
+    /**
+     * Gets the number of entries.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Gets the total length of the entries.
+     *
+     * @return the sum of the lengths of the entries.
+     */
+    public int getLength() {
+        return subtreeLength(root);
+    }
+
+    /**
+     * Gets an entry by its index.
+     *
+     * @param index index of the entry.
+     * @return the entry.
+     * @throws IndexOutOfBoundsException if the index is not in the sequence.
+     */
+    public Entry<E> get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Invalid index for the sequence");
+        }
+        Entry<E> entry = root;
+        while (true) {
+            int leftSize = size(entry.left);
+            if (index < leftSize) {
+                entry = entry.left;
+            } else if (index == leftSize) {
+                return entry;
+            } else {
+                index -= leftSize + 1;
+                entry = entry.right;
+            }
+        }
+    }
+
+    /**
+     * Gets the index of an entry, which must be in the sequence.
+     *
+     * @param entry the entry.
+     * @return the index of the entry.
+     */
+    public int indexOf(Entry<E> entry) {
+        int index = size(entry.left);
+        for (Entry<E> child = entry; child.parent != null; child = child.parent) {
+            if (child == child.parent.right) {
+                index += size(child.parent.left) + 1;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Gets the sum of the lengths of the entries before an index.
+     *
+     * @param end index after the last entry of the sum.
+     * @return the sum of the lengths of the entries in [0, end).
+     */
+    public int getOffset(int end) {
+        int sum = 0;
+        Entry<E> entry = root;
+        while (entry != null) {
+            int leftSize = size(entry.left);
+            if (end <= leftSize) {
+                entry = entry.left;
+            } else {
+                sum += subtreeLength(entry.left) + entry.length;
+                end -= leftSize + 1;
+                entry = entry.right;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Gets the sum of the line breaks of the entries before an index.
+     *
+     * @param end index after the last entry of the sum.
+     * @return the sum of the line breaks of the entries in [0, end).
+     */
+    public int getNumLineBreaks(int end) {
+        int sum = 0;
+        Entry<E> entry = root;
+        while (entry != null) {
+            int leftSize = size(entry.left);
+            if (end <= leftSize) {
+                entry = entry.left;
+            } else {
+                sum += subtreeLineBreaks(entry.left) + entry.numLineBreaks;
+                end -= leftSize + 1;
+                entry = entry.right;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Finds the entry that contains an offset.
+     *
+     * @param offset the offset.
+     * @return the index of the entry that contains the offset, or the number of entries if the offset is not before
+     * the end of the last entry.
+     */
+    public int find(int offset) {
+        int index = 0;
+        Entry<E> entry = root;
+        while (entry != null) {
+            int leftLength = subtreeLength(entry.left);
+            if (offset < leftLength) {
+                entry = entry.left;
+            } else if (offset < leftLength + entry.length) {
+                return index + size(entry.left);
+            } else {
+                offset -= leftLength + entry.length;
+                index += size(entry.left) + 1;
+                entry = entry.right;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Replaces a range of entries with new entries, which must not be in a sequence.
+     *
+     * @param first   index of the first replaced entry.
+     * @param last    index of the last replaced entry, which is first - 1 if none is replaced.
+     * @param entries the new entries in order.
+     */
+    public void replace(int first, int last, List<Entry<E>> entries) {
+        split(root, first);
+        Entry<E> before = splitLeft;
+        split(splitRight, last - first + 1);
+        Entry<E> after = splitRight;
+        root = merge(merge(before, build(entries)), after);
+        if (root != null) {
+            root.parent = null;
+        }
+    }
+
+    /**
+     * Gets the entries in order. This takes a linear time.
+     *
+     * @return a list of the entries.
+     */
+    public ArrayList<Entry<E>> getEntries() {
+        ArrayList<Entry<E>> entries = new ArrayList<>(size());
+        Entry<E> entry = root;
+        ArrayList<Entry<E>> ancestors = new ArrayList<>();
+        while (entry != null || !ancestors.isEmpty()) {
+            if (entry != null) {
+                ancestors.add(entry);
+                entry = entry.left;
+            } else {
+                entry = ancestors.remove(ancestors.size() - 1);
+                entries.add(entry);
+                entry = entry.right;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Splits a subtree into its first entries and the others, which are kept as splitLeft and splitRight. The parents
+     * of the roots of the parts are left as they are.
+     *
+     * @param entry the root of the subtree.
+     * @param count the number of entries of the first part.
+     */
+    private void split(Entry<E> entry, int count) {
+        if (entry == null) {
+            splitLeft = null;
+            splitRight = null;
+            return;
+        }
+        if (count <= size(entry.left)) {
+            split(entry.left, count);
+            entry.left = splitRight;
+            update(entry);
+            splitRight = entry;
+        } else {
+            split(entry.right, count - size(entry.left) - 1);
+            entry.right = splitLeft;
+            update(entry);
+            splitLeft = entry;
+        }
+    }
+
+    /**
+     * Merges two subtrees whose entries are in order.
+     *
+     * @param left  the root of the subtree of the first entries.
+     * @param right the root of the subtree of the last entries.
+     * @return the root of the merged subtree.
+     */
+    private Entry<E> merge(Entry<E> left, Entry<E> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    /**
+     * Builds a subtree of entries in order in a linear time. The right spine of the subtree is kept in a stack, and
+     * each entry pops the entries of lower priority, which become its left subtree.
+     *
+     * @param entries the entries in order.
+     * @return the root of the subtree.
+     */
+    private static <E> Entry<E> build(List<Entry<E>> entries) {
+        ArrayList<Entry<E>> spine = new ArrayList<>();
+        for (Entry<E> entry : entries) {
+            Entry<E> popped = null;
+            while (!spine.isEmpty() && spine.get(spine.size() - 1).priority < entry.priority) {
+                popped = spine.remove(spine.size() - 1);
+                update(popped);
+            }
+            entry.left = popped;
+            entry.right = null;
+            if (!spine.isEmpty()) {
+                spine.get(spine.size() - 1).right = entry;
+            }
+            spine.add(entry);
+        }
+        for (int i = spine.size() - 1; i >= 0; --i) {
+            update(spine.get(i));
+        }
+        return spine.isEmpty() ? null : spine.get(0);
+    }
+}
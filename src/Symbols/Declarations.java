@@ -0,0 +1,137 @@
+package Symbols;
+
+import Utilities.Block;
+import Utilities.Token;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Variables declared over the symbol table. The parsers look up a variable in their declarations before the symbol
+ * table and add the variables that a statement declares to them, so that parsing a statement does not change the
+ * symbol table. The parsers of whole programs commit the declarations to the symbol table after each statement, and
+ * the owner of the declarations decides what becomes of them otherwise.
+ *
+ * <p>A snapshot of the declarations cannot be changed, so that it can be read by several threads at once, as long as
+ * the symbol table is not changed either.
+ */
+public class Declarations {
+    private final Map<SymbolInfo, IDInfo> ids;
+    private final boolean isSnapshot;
+
+    public Declarations() {
+        this(new HashMap<>(), false);
+    }
+
+    private Declarations(Map<SymbolInfo, IDInfo> ids, boolean isSnapshot) {
+        this.ids = ids;
+        this.isSnapshot = isSnapshot;
+    }
+
+    /**
+     * Gets a snapshot of the declarations, which does not change when they do.
+     *
+     * @return the snapshot.
+     */
+    public Declarations snapshot() {
+        return new Declarations(Map.copyOf(ids), true);
+    }
+
+    /**
+     * Checks that the declarations can be changed.
+     *
+     * @throws UnsupportedOperationException if the declarations are a snapshot.
+     */
+    private void checkNotSnapshot() {
+        if (isSnapshot) {
+            throw new UnsupportedOperationException("Cannot change a snapshot of the declarations");
+        }
+    }
+
+    /**
+     * Gets a variable from the declarations, or from the symbol table if it has not been declared here.
+     *
+     * @param idStr the name of the variable.
+     * @param scope the scope of the variable.
+     * @return the variable if one exists and null otherwise.
+     */
+    public IDInfo getID(String idStr, Block scope) {
+        IDInfo idInfo = getDeclaredID(idStr, scope);
+        return idInfo != null ? idInfo : (IDInfo) SymbolTable.getInstance().getID(idStr, scope);
+    }
+
+    /**
+     * Gets a variable from the declarations only.
+     *
+     * @param idStr the name of the variable.
+     * @param scope the scope of the variable.
+     * @return the variable if it has been declared here and null otherwise.
+     */
+    protected IDInfo getDeclaredID(String idStr, Block scope) {
+        if (ids.isEmpty()) {
+            return null;
+        }
+        return ids.get(new IDInfo(new Token(idStr), scope, null, true));
+    }
+
+    /**
+     * Determines if a string is a variable of the declarations or of the symbol table.
+     *
+     * @param idStr the string to be checked.
+     * @param scope the scope of the supposed variable.
+     * @return true if the string is a variable and false otherwise.
+     */
+    public boolean isID(String idStr, Block scope) {
+        return getID(idStr, scope) != null;
+    }
+
+    /**
+     * Declares a variable.
+     *
+     * @param idInfo the variable.
+     * @throws UnsupportedOperationException if the declarations are a snapshot.
+     */
+    public void declare(IDInfo idInfo) {
+        checkNotSnapshot();
+        ids.put(idInfo, idInfo);
+    }
+
+    /**
+     * Removes a declared variable. The symbol table is left unchanged.
+     *
+     * @param idInfo a variable equal to the one to be removed.
+     * @return the removed variable if it has been declared here and null otherwise.
+     * @throws UnsupportedOperationException if the declarations are a snapshot.
+     */
+    public IDInfo remove(IDInfo idInfo) {
+        checkNotSnapshot();
+        return ids.remove(idInfo);
+    }
+
+    /**
+     * Gets the declared variables.
+     *
+     * @return a list of the declared variables.
+     */
+    public ArrayList<IDInfo> getIDs() {
+        return new ArrayList<>(ids.values());
+    }
+
+    /**
+     * Adds the declared variables to the symbol table and removes them from the declarations.
+     *
+     * @throws UnsupportedOperationException if the declarations are a snapshot.
+     */
+    public void commit() {
+        checkNotSnapshot();
+        if (ids.isEmpty()) {
+            return;
+        }
+        SymbolTable symbolTable = SymbolTable.getInstance();
+        for (IDInfo idInfo : ids.values()) {
+            symbolTable.set(idInfo);
+        }
+        ids.clear();
+    }
+}
@@ -30,8 +30,8 @@ public class IDInfo extends SymbolInfo {
 
     @Override
     public int hashCode() {
-        String hashStr = scope.id() + ":" + token.getValue();
-        return hashStr.hashCode();
+        // Combine the hash codes rather than hashing a concatenated string, since IDs are looked up for every use
+        return 31 * scope.id().hashCode() + token.getValue().hashCode();
     }
 
     @Override
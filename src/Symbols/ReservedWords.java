@@ -0,0 +1,124 @@
+package Symbols;
+
+import Utilities.Token;
+
+import java.util.List;
+
+/**
+ * A perfect-hash table of the reserved words, that is, the keywords and the types, of the symbol table. A word is
+ * looked up by its hash code, so a lexer can compute the key while it scans the word and classify the word without
+ * creating a string.
+ */
+public class ReservedWords {
+    // Number of multipliers tried for a table size before the size is doubled
+    private static final int MAX_SEEDS = 64;
+    // The size beyond which the table accepts collisions, which only happen for words with the same hash code
+    private static final int MAX_TABLE_SIZE = 1 << 16;
+    private final Token[][] slots;
+    private final int shift;
+    private final int multiplier;
+
+    /**
+     * Builds the table from the shared tokens of the reserved words. If a word appears more than once, the first
+     * token is kept.
+     *
+     * @param words the shared tokens of the reserved words.
+     */
+    ReservedWords(List<Token> words) {
+        int size = Integer.highestOneBit(Math.max(words.size(), 1) * 2 - 1) * 2;
+        int seed = 0;
+        while (!isPerfect(words, size, multiplierOf(seed)) && size < MAX_TABLE_SIZE) {
+            ++seed;
+            if (seed == MAX_SEEDS) {
+                seed = 0;
+                size *= 2;
+            }
+        }
+
+        this.shift = Integer.SIZE - Integer.numberOfTrailingZeros(size);
+        this.multiplier = multiplierOf(seed);
+        this.slots = new Token[size][];
+        for (Token word : words) {
+            add(word);
+        }
+    }
+
+    /**
+     * Gets the multiplier of the hash function for a seed.
+     *
+     * @param seed the seed.
+     * @return an odd multiplier.
+     */
+    private static int multiplierOf(int seed) {
+        return 0x9E3779B9 + seed * 0x6A09E666 | 1;
+    }
+
+    /**
+     * Gets the slot of a word in a table.
+     *
+     * @param hash       the hash code of the word.
+     * @param shift      the number of bits to drop from the mixed hash.
+     * @param multiplier the multiplier of the hash function.
+     * @return the slot of the word.
+     */
+    private static int slotOf(int hash, int shift, int multiplier) {
+        return hash * multiplier >>> shift;
+    }
+
+    /**
+     * Determines if no two distinct words fall into the same slot of a table.
+     *
+     * @param words      the shared tokens of the reserved words.
+     * @param size       the size of the table, a power of two.
+     * @param multiplier the multiplier of the hash function.
+     * @return true if the hash function is perfect for the words and false otherwise.
+     */
+    private static boolean isPerfect(List<Token> words, int size, int multiplier) {
+        int shift = Integer.SIZE - Integer.numberOfTrailingZeros(size);
+        String[] used = new String[size];
+        for (Token word : words) {
+            String str = word.getValue();
+            int slot = slotOf(str.hashCode(), shift, multiplier);
+            if (used[slot] != null && !used[slot].equals(str)) {
+                return false;
+            }
+            used[slot] = str;
+        }
+        return true;
+    }
+
+    /**
+     * Adds a word to its slot unless the word is already in the table.
+     *
+     * @param word the shared token of the word.
+     */
+    private void add(Token word) {
+        String str = word.getValue();
+        int slot = slotOf(str.hashCode(), shift, multiplier);
+        Token[] bucket = slots[slot];
+        if (bucket == null) {
+            slots[slot] = new Token[]{word};
+            return;
+        }
+        for (Token token : bucket) {
+            if (token.getValue().equals(str)) {
+                return;
+            }
+        }
+        Token[] newBucket = new Token[bucket.length + 1];
+        System.arraycopy(bucket, 0, newBucket, 0, bucket.length);
+        newBucket[bucket.length] = word;
+        slots[slot] = newBucket;
+    }
+
+    /**
+     * Gets the reserved words that may match a word. The caller must compare the candidates with the word, since a
+     * word that is not reserved can have the same slot as a reserved word.
+     *
+     * @param hash the hash code of the word, as computed by String.hashCode.
+     * @return the candidate tokens or null if the word is certainly not reserved.
+     */
+    public Token[] getCandidates(int hash) {
+        return slots[slotOf(hash, shift, multiplier)];
+    }
+}
@@ -5,12 +5,17 @@ import Utilities.Global;
 import Utilities.Token;
 import Utilities.TokenType;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 
 public class SymbolTable {
     private final HashMap<SymbolInfo, SymbolInfo> symbols = new HashMap<>();
     private static SymbolTable symbolTable;
     private static boolean init = false;
+    // Built on demand and discarded whenever a keyword or a type is registered or removed
+    private ReservedWords reservedWords;
+    // Incremented whenever an operator is registered or removed
+    private int operatorVersion = 0;
 
     private SymbolTable() {
     }
@@ -60,9 +65,82 @@ public class SymbolTable {
      * @return the old symbol if one exists and null otherwise.
      */
     public SymbolInfo set(SymbolInfo symbol) {
+        invalidate(symbol.getSymbolType());
         return symbols.put(symbol, symbol);
     }
 
+    /**
+     * Removes a symbol from the table.
+     *
+     * @param symbol a symbol equal to the one to be removed.
+     * @return the removed symbol if one exists and null otherwise.
+     */
+    public SymbolInfo remove(SymbolInfo symbol) {
+        invalidate(symbol.getSymbolType());
+        return symbols.remove(symbol);
+    }
+
+    /**
+     * Discards what is built from the symbols of a given type after one of them has changed.
+     *
+     * @param symbolType the type of the changed symbol.
+     */
+    private void invalidate(SymbolType symbolType) {
+        if (symbolType == SymbolType.KEYWORD || symbolType == SymbolType.TYPE) {
+            reservedWords = null;
+        } else if (symbolType == SymbolType.OPERATOR) {
+            ++operatorVersion;
+        }
+    }
+
+    /**
+     * Gets the table of the reserved words, that is, the keywords and the types. Keywords take precedence over types
+     * with the same name.
+     *
+     * @return the table of the reserved words.
+     */
+    public ReservedWords getReservedWords() {
+        ReservedWords words = reservedWords;
+        if (words == null) {
+            ArrayList<Token> tokens = new ArrayList<>();
+            for (SymbolInfo info : getSymbols(SymbolType.KEYWORD)) {
+                tokens.add(info.getToken());
+            }
+            for (SymbolInfo info : getSymbols(SymbolType.TYPE)) {
+                tokens.add(info.getToken());
+            }
+            words = new ReservedWords(tokens);
+            reservedWords = words;
+        }
+        return words;
+    }
+
+    /**
+     * Gets a number that changes whenever an operator is registered or removed, so that what is built from the
+     * operators can be kept until the operators change.
+     *
+     * @return the version of the operators.
+     */
+    public int getOperatorVersion() {
+        return operatorVersion;
+    }
+
+    /**
+     * Gets all the symbols of a given type in the table.
+     *
+     * @param symbolType the type of the symbols.
+     * @return a list of symbols of the given type.
+     */
+    public ArrayList<SymbolInfo> getSymbols(SymbolType symbolType) {
+        ArrayList<SymbolInfo> result = new ArrayList<>();
+        for (SymbolInfo symbol : symbols.values()) {
+            if (symbol.getSymbolType() == symbolType) {
+                result.add(symbol);
+            }
+        }
+        return result;
+    }
+
     /**
      * Gets a symbol based on the key string and the symbol type.
      *
@@ -0,0 +1,80 @@
+package Utilities;
+
+import Exceptions.CancellationError;
+
+import java.time.Duration;
+
+/**
+ * A token through which a compilation is cancelled, either by another thread or once its deadline has passed. The
+ * lexer, the parsers and the AST traversal that are given the token check it every CHECK_INTERVAL tokens, statements
+ * or nodes, and throw a CancellationError once it has tripped, so that a compilation stops promptly without its thread
+ * being interrupted. A check only reads a volatile flag and, if there is a deadline, the time.
+ */
+public final class CancellationToken {
+    public static final int CHECK_INTERVAL = 256;
+    // The token that is never cancelled, which is checked by default
+    public static final CancellationToken NONE = new CancellationToken(false, 0);
+    private final boolean hasDeadline;
+    // Deadline as given by System.nanoTime
+    private final long deadline;
+    private volatile boolean isCancelled = false;
+
+    private CancellationToken(boolean hasDeadline, long deadline) {
+        this.hasDeadline = hasDeadline;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Creates a token that trips only when it is cancelled.
+     *
+     * @return the token.
+     */
+    public static CancellationToken create() {
+        return new CancellationToken(false, 0);
+    }
+
+    /**
+     * Creates a token that trips when it is cancelled or once a timeout has elapsed from now.
+     *
+     * @param timeout the time that the compilation may take.
+     * @return the token.
+     */
+    public static CancellationToken withTimeout(Duration timeout) {
+        return new CancellationToken(true, System.nanoTime() + timeout.toNanos());
+    }
+
+    /**
+     * Cancels the compilations that check the token. This can be called from any thread.
+     *
+     * @throws IllegalStateException if the token is NONE.
+     */
+    public void cancel() {
+        if (this == NONE) {
+            throw new IllegalStateException("Cannot cancel the token that is never cancelled");
+        }
+        isCancelled = true;
+    }
+
+    /**
+     * Determines if the token has tripped, that is, if it has been cancelled or its deadline has passed.
+     *
+     * @return true if the token has tripped and false otherwise.
+     */
+    public boolean isCancelled() {
+        return isCancelled || hasDeadline && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Checks if the token has tripped.
+     *
+     * @throws CancellationError if the token has been cancelled or its deadline has passed.
+     */
+    public void check() {
+        if (isCancelled) {
+            throw new CancellationError(false);
+        }
+        if (hasDeadline && System.nanoTime() - deadline >= 0) {
+            throw new CancellationError(true);
+        }
+    }
+}
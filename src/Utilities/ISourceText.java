@@ -0,0 +1,12 @@
+package Utilities;
+
+public interface ISourceText {
+    /**
+     * Decodes a range of the source into a string.
+     *
+     * @param offset offset of the range in the source.
+     * @param length length of the range in the source.
+     * @return the text in the range.
+     */
+    String getText(int offset, int length);
+}
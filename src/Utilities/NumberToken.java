@@ -0,0 +1,68 @@
+package Utilities;
+
+/**
+ * A numeric literal that carries its value, which is computed by the lexer as the literal is scanned. The value of an
+ * INT literal is a long and the value of a FLOAT literal is a double, both are kept in the same 64 bits.
+ */
+public class NumberToken extends Token {
+    private final long valueBits;
+
+    /**
+     * Creates a numeric literal.
+     *
+     * @param value     the text of the literal.
+     * @param tokenType INT or FLOAT.
+     * @param valueBits the value of an INT literal or the bits of the value of a FLOAT literal as given by
+     *                  Double.doubleToRawLongBits.
+     */
+    public NumberToken(String value, TokenType tokenType, long valueBits) {
+        this(value, tokenType, -1, valueBits);
+    }
+
+    /**
+     * Creates a numeric literal that records where its text starts in the input.
+     *
+     * @param value     the text of the literal.
+     * @param tokenType INT or FLOAT.
+     * @param offset    offset of the literal's text in the input.
+     * @param valueBits the value of an INT literal or the bits of the value of a FLOAT literal as given by
+     *                  Double.doubleToRawLongBits.
+     */
+    public NumberToken(String value, TokenType tokenType, int offset, long valueBits) {
+        super(value, tokenType, offset);
+        this.valueBits = valueBits;
+    }
+
+    /**
+     * Creates a numeric literal whose text is a slice of the source that is only decoded when it is requested.
+     *
+     * @param source    the source that holds the literal's text.
+     * @param offset    offset of the literal's text in the source.
+     * @param length    length of the literal's text in the source.
+     * @param tokenType INT or FLOAT.
+     * @param valueBits the value of an INT literal or the bits of the value of a FLOAT literal as given by
+     *                  Double.doubleToRawLongBits.
+     */
+    public NumberToken(ISourceText source, int offset, int length, TokenType tokenType, long valueBits) {
+        super(source, offset, length, tokenType);
+        this.valueBits = valueBits;
+    }
+
+    /**
+     * Gets the value of the literal as a long. The value of a FLOAT literal is converted as by a cast.
+     *
+     * @return the value of the literal.
+     */
+    public long getLongValue() {
+        return getType() == TokenType.FLOAT ? (long) Double.longBitsToDouble(valueBits) : valueBits;
+    }
+
+    /**
+     * Gets the value of the literal as a double. The value of an INT literal is converted as by a cast.
+     *
+     * @return the value of the literal.
+     */
+    public double getDoubleValue() {
+        return getType() == TokenType.FLOAT ? Double.longBitsToDouble(valueBits) : valueBits;
+    }
+}
@@ -2,11 +2,44 @@ package Utilities;
 
 public class Token {
 
-    private final String value;
-    private TokenType tokenType;
+    private String value;
+    private final ISourceText source;
+    private final int offset;
+    private final int length;
+    private final TokenType tokenType;
 
     public Token(String value, TokenType tokenType) {
+        this(value, tokenType, -1);
+    }
+
+    /**
+     * Creates a token that records where its text starts in the input.
+     *
+     * @param value     the token's text.
+     * @param tokenType type of the token.
+     * @param offset    offset of the token's text in the input.
+     */
+    public Token(String value, TokenType tokenType, int offset) {
         this.value = value;
+        this.source = null;
+        this.offset = offset;
+        this.length = value.length();
+        this.tokenType = tokenType;
+    }
+
+    /**
+     * Creates a token whose value is a slice of the source that is only decoded when it is requested.
+     *
+     * @param source    the source that holds the token's text.
+     * @param offset    offset of the token's text in the source.
+     * @param length    length of the token's text in the source.
+     * @param tokenType type of the token.
+     */
+    public Token(ISourceText source, int offset, int length, TokenType tokenType) {
+        this.value = null;
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
         this.tokenType = tokenType;
     }
 
@@ -15,6 +48,9 @@ public class Token {
     }
 
     public String getValue() {
+        if (value == null) {
+            value = source.getText(offset, length);
+        }
         return value;
     }
 
@@ -22,13 +58,20 @@ public class Token {
         return tokenType;
     }
 
-    public void setType(TokenType tokenType) {
-        this.tokenType = tokenType;
+    /**
+     * Gets the offset at which the token's text starts in the input. Offsets count characters, or bytes for an input
+     * that is scanned as UTF-8 encoded bytes. The shared token of a keyword, a type or an operator has no offset, the
+     * offset of each of its occurrences is given by the getTokenOffset of the source that returned it.
+     *
+     * @return the offset of the token or -1 if the token is shared or is not from an input.
+     */
+    public int getOffset() {
+        return offset;
     }
 
     @Override
     public String toString() {
-        return value + ": " + tokenType;
+        return getValue() + ": " + tokenType;
     }
 
     @Override
@@ -39,6 +82,6 @@ public class Token {
         if (!(obj instanceof Token token)) {
             return false;
         }
-        return value.equals(token.value) && tokenType == token.tokenType;
+        return tokenType == token.tokenType && getValue().equals(token.getValue());
     }
 }
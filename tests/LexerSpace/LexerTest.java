@@ -1,21 +1,44 @@
 package LexerSpace;
 
+import Exceptions.CancellationError;
 import Exceptions.SyntaxError;
+import Symbols.SymbolTable;
+import Symbols.TypeInfo;
+import Utilities.CancellationToken;
+import Utilities.NumberToken;
 import Utilities.Token;
 import Utilities.TokenType;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class LexerTest {
     private ArrayList<Token> testLexerHelper(String inputStr) throws SyntaxError, IOException {
         BufferedReader reader = new BufferedReader(new StringReader(inputStr));
         Lexer lexer = new Lexer(reader);
+        return getAllTokens(lexer);
+    }
+
+    private ArrayList<Token> getAllTokens(Lexer lexer) throws SyntaxError, IOException {
         Token token;
         ArrayList<Token> actualTokens = new ArrayList<>();
         while ((token = lexer.getNextToken()) != null) {
@@ -24,6 +47,17 @@ class LexerTest {
         return actualTokens;
     }
 
+    private ArrayList<Token> getAllTokens(ITokenSource tokenSource, ArrayList<Integer> offsets)
+            throws SyntaxError, IOException {
+        Token token;
+        ArrayList<Token> actualTokens = new ArrayList<>();
+        while ((token = tokenSource.getNextToken()) != null) {
+            actualTokens.add(token);
+            offsets.add(tokenSource.getTokenOffset());
+        }
+        return actualTokens;
+    }
+
     @Test
     public void testLexerValid1() {
         String inputStr = "52+-(-25.)-(32.4-+.e.)/.9*.";
@@ -91,4 +125,351 @@ class LexerTest {
             e.printStackTrace();
         }
     }
+
+    @Test
+    public void testLexerMappedFile(@TempDir Path tempDir) throws SyntaxError, IOException {
+        String inputStr = "var \u00e9t\u00e9_2 = 3.e+2 *\n(\u00e9t\u00e9_2 - .5)\t/ x1\n";
+        Path path = tempDir.resolve("input.txt");
+        Files.writeString(path, inputStr, StandardCharsets.UTF_8);
+        ArrayList<Token> expectedTokens = testLexerHelper(inputStr);
+        ArrayList<Token> actualTokens = getAllTokens(new Lexer(path));
+        assertEquals(expectedTokens, actualTokens);
+    }
+
+    @Test
+    public void testLexerUtf8Bytes() throws SyntaxError, IOException {
+        String inputStr = "var \u00e9t\u00e9_\u01c52: float = 3.e+2 *\n(\u00e9t\u00e9_\u01c52 - .5)\t/ x1";
+        ArrayList<Token> expectedTokens = testLexerHelper(inputStr);
+        byte[] bytes = inputStr.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expectedTokens, getAllTokens(new Lexer(bytes)));
+
+        // Only the remaining bytes of a byte buffer are scanned
+        ByteBuffer byteBuffer = ByteBuffer.allocate(bytes.length + 4);
+        byteBuffer.put("int ".getBytes(StandardCharsets.UTF_8)).put(bytes).position(4);
+        assertEquals(expectedTokens, getAllTokens(new Lexer(byteBuffer)));
+        assertEquals(4, byteBuffer.position());
+    }
+
+    @Test
+    public void testLexerNumberValues() throws SyntaxError, IOException {
+        String inputStr = "52 .5 2.e-1 71e3 0.1 9007199254740993.0 1e400 123456789012345678901.5e-20 " +
+                "0009223372036854775807";
+        ArrayList<Token> actualTokens = testLexerHelper(inputStr);
+        assertEquals(52, ((NumberToken) actualTokens.get(0)).getLongValue());
+        assertEquals(0.5, ((NumberToken) actualTokens.get(1)).getDoubleValue());
+        assertEquals(0.2, ((NumberToken) actualTokens.get(2)).getDoubleValue());
+        assertEquals(71000.0, ((NumberToken) actualTokens.get(3)).getDoubleValue());
+        assertEquals(0.1, ((NumberToken) actualTokens.get(4)).getDoubleValue());
+        assertEquals(9007199254740992.0, ((NumberToken) actualTokens.get(5)).getDoubleValue());
+        assertEquals(Double.POSITIVE_INFINITY, ((NumberToken) actualTokens.get(6)).getDoubleValue());
+        assertEquals(1.2345678901234567, ((NumberToken) actualTokens.get(7)).getDoubleValue());
+        assertEquals(Long.MAX_VALUE, ((NumberToken) actualTokens.get(8)).getLongValue());
+
+        TokenStream tokenStream = TokenStream.lex(inputStr);
+        for (int i = 0; i < actualTokens.size(); ++i) {
+            NumberToken numberToken = (NumberToken) actualTokens.get(i);
+            assertEquals(numberToken.getDoubleValue(), tokenStream.doubleValue(i));
+            assertEquals(numberToken.getLongValue(), ((NumberToken) tokenStream.token(i)).getLongValue());
+        }
+
+        // An integer that does not fit in a long is a syntax error
+        for (String outOfRangeStr : new String[]{"9223372036854775808", "9999999999999999999", "99999999999999999999"}) {
+            String invalidStr = "a = 1;\nb = " + outOfRangeStr + " + 1;";
+            SyntaxError syntaxError = assertThrows(SyntaxError.class, () -> testLexerHelper(invalidStr));
+            assertEquals("Integer literal out of range on line 2", syntaxError.getMessage());
+            syntaxError = assertThrows(SyntaxError.class, () -> TokenStream.lex(invalidStr));
+            assertEquals("Integer literal out of range on line 2", syntaxError.getMessage());
+        }
+    }
+
+    @Test
+    public void testLexerSharedFixedTokens() throws SyntaxError, IOException {
+        String inputStr = "var x = (x+1) + var int";
+        ArrayList<Integer> offsets = new ArrayList<>();
+        ArrayList<Token> actualTokens = getAllTokens(new Lexer(inputStr), offsets);
+        assertEquals(11, actualTokens.size());
+        assertSame(actualTokens.get(0), actualTokens.get(9));
+        assertSame(actualTokens.get(5), actualTokens.get(8));
+        assertEquals(0, offsets.get(0));
+        assertEquals(16, offsets.get(9));
+        assertEquals(new Token("x", TokenType.ID), actualTokens.get(4));
+        assertEquals(new Token("int", TokenType.INT_TYPE), actualTokens.get(10));
+        assertSame(actualTokens.get(9), TokenStream.lex(inputStr).token(9));
+    }
+
+    @Test
+    public void testLexerRegisteredType() throws SyntaxError, IOException {
+        TypeInfo doubleType = new TypeInfo(new Token("double", TokenType.FLOAT_TYPE));
+        SymbolTable.getInstance().set(doubleType);
+        String inputStr = "var d: double = doubles + in";
+        try {
+            ArrayList<Token> actualTokens = testLexerHelper(inputStr);
+            assertEquals(new Token("double", TokenType.FLOAT_TYPE), actualTokens.get(3));
+            assertEquals(new Token("doubles", TokenType.ID), actualTokens.get(5));
+            assertEquals(new Token("in", TokenType.ID), actualTokens.get(7));
+        } finally {
+            SymbolTable.getInstance().remove(doubleType);
+        }
+
+        // Once the type is removed, its word is an ID again
+        assertEquals(new Token("double", TokenType.ID), testLexerHelper(inputStr).get(3));
+    }
+
+    @Test
+    public void testVectorCharScanner() {
+        CharScanner vectorScanner = CharScanner.createVectorScanner();
+        assumeTrue(vectorScanner != null, "The vector scanner is not compiled or jdk.incubator.vector is not enabled");
+        CharScanner scalarScanner = new CharScanner();
+        String[] runs = {" \t\n\u000B\f\r\u001C\u001F", "azAZ_09"};
+        // Characters that end a run, or that only the scalar scanner can classify
+        String others = "+(.$\u0000\u00e9\u0660\u2003\u00a0";
+        Random random = new Random(42);
+        // Runs of up to twice the widest vectors of 64 lanes end at every position in a vector
+        for (int length = 0; length <= 130; ++length) {
+            for (String run : runs) {
+                char[] chars = new char[length + 2];
+                for (int i = 0; i < length; ++i) {
+                    chars[i] = run.charAt(random.nextInt(run.length()));
+                }
+                chars[length] = others.charAt(random.nextInt(others.length()));
+                chars[length + 1] = run.charAt(0);
+                for (int from = 0; from <= Math.min(length, 2); ++from) {
+                    for (int to = from; to <= chars.length; ++to) {
+                        assertEquals(scalarScanner.skipSpaces(chars, from, to),
+                                vectorScanner.skipSpaces(chars, from, to));
+                        assertEquals(scalarScanner.skipIdentifierPart(chars, from, to),
+                                vectorScanner.skipIdentifierPart(chars, from, to));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLexerPositions() throws SyntaxError, IOException {
+        String inputStr = "var \u00e9t\u00e9: float = 3.e+2 *\n\n  (\u00e9t\u00e9 - .5)\r\n\t/ x1";
+        Lexer lexer = new Lexer(new BufferedReader(new StringReader(inputStr)));
+        ArrayList<Integer> offsets = new ArrayList<>();
+        ArrayList<Token> actualTokens = getAllTokens(lexer, offsets);
+        Token token = actualTokens.get(5);
+        assertEquals("3.0e+2", token.getValue());
+        assertEquals(17, token.getOffset());
+        assertEquals(17, offsets.get(5));
+        assertEquals(1, lexer.getLine(token.getOffset()));
+        assertEquals(18, lexer.getColumn(token.getOffset()));
+        token = actualTokens.get(8);
+        assertEquals(inputStr.indexOf("\u00e9t\u00e9 -"), token.getOffset());
+        assertEquals(3, lexer.getLine(token.getOffset()));
+        assertEquals(4, lexer.getColumn(token.getOffset()));
+        assertEquals(inputStr.indexOf('/'), offsets.get(12));
+        assertEquals(4, lexer.getCurrLine());
+
+        Lexer bytesLexer = new Lexer(inputStr.getBytes(StandardCharsets.UTF_8));
+        ArrayList<Integer> byteOffsets = new ArrayList<>();
+        getAllTokens(bytesLexer, byteOffsets);
+        for (int i = 0; i < actualTokens.size(); ++i) {
+            assertEquals(lexer.getLine(offsets.get(i)), bytesLexer.getLine(byteOffsets.get(i)));
+            assertEquals(lexer.getColumn(offsets.get(i)), bytesLexer.getColumn(byteOffsets.get(i)));
+        }
+
+        TokenStream tokenStream = TokenStream.lex(inputStr);
+        for (int i = 0; i < actualTokens.size(); ++i) {
+            assertEquals(offsets.get(i), tokenStream.start(i));
+            assertEquals(lexer.getLine(offsets.get(i)), tokenStream.line(i));
+            assertEquals(lexer.getColumn(offsets.get(i)), tokenStream.column(i));
+        }
+
+        // A syntax error reports the line of the invalid token
+        SyntaxError syntaxError = assertThrows(SyntaxError.class, () ->
+                testLexerHelper("a = 1\nb = 2\n\nc = $"));
+        assertEquals("Unable to get next token because of invalid syntax on line 4", syntaxError.getMessage());
+    }
+
+    @Test
+    public void testLexerLookahead() throws SyntaxError, IOException {
+        BufferedReader reader = new BufferedReader(new StringReader("a = (b + 1) * c"));
+        Lexer lexer = new Lexer(reader);
+        assertEquals(new Token("a", TokenType.ID), lexer.peek(0));
+        assertEquals(new Token("(", TokenType.LPAREN), lexer.peek(2));
+        assertEquals(new Token("a", TokenType.ID), lexer.getNextToken());
+        lexer.mark();
+        assertEquals(new Token("=", TokenType.ASSIGNMENT), lexer.getNextToken());
+        assertEquals(new Token("(", TokenType.LPAREN), lexer.getNextToken());
+        for (int i = 0; i < 20; ++i) {
+            lexer.peek(i);
+        }
+        assertEquals(new Token("b", TokenType.ID), lexer.getNextToken());
+        lexer.reset();
+        assertEquals(new Token("=", TokenType.ASSIGNMENT), lexer.getNextToken());
+        assertEquals(new Token("(", TokenType.LPAREN), lexer.getNextToken());
+        ArrayList<Token> expectedTokens = testLexerHelper("b + 1) * c");
+        assertEquals(expectedTokens, getAllTokens(lexer));
+        assertNull(lexer.peek(0));
+        assertThrows(IllegalStateException.class, lexer::reset);
+    }
+
+    @Test
+    public void testLexerRestart() throws SyntaxError, IOException {
+        Lexer lexer = new Lexer("a = (b + 1)\n* c");
+        lexer.mark();
+        ArrayList<Token> firstTokens = getAllTokens(lexer);
+        assertEquals(2, lexer.getCurrLine());
+
+        // The tokens of the first input keep their text after the lexer is restarted on a longer input
+        String inputStr = "var \u00e9t\u00e9: float = 3.e+2 *\n\n  (\u00e9t\u00e9 - .5)\r\n\t/ x1";
+        lexer.restart(inputStr);
+        assertEquals(testLexerHelper(inputStr), getAllTokens(lexer));
+        assertEquals(4, lexer.getCurrLine());
+        assertEquals(testLexerHelper("a = (b + 1)\n* c"), firstTokens);
+        assertThrows(IllegalStateException.class, lexer::reset);
+
+        // A lexer over a reader is restarted on a character sequence as well
+        Lexer readerLexer = new Lexer(new BufferedReader(new StringReader("x y z")));
+        readerLexer.getNextToken();
+        readerLexer.restart("a;\nb");
+        assertEquals(testLexerHelper("a;\nb"), getAllTokens(readerLexer));
+        assertEquals(2, readerLexer.getCurrLine());
+    }
+
+    @Test
+    public void testTokenStream() throws SyntaxError, IOException {
+        String inputStr = "  var b=b +\t-.e+.5 *\n  a/a  *((2.e-1-67.+71e3*21)))\t";
+        ArrayList<Token> expectedTokens = testLexerHelper(inputStr);
+        TokenStream tokenStream = TokenStream.lex(inputStr);
+        assertEquals(expectedTokens.size(), tokenStream.size());
+        ArrayList<Token> actualTokens = new ArrayList<>();
+        for (int i = 0; i < tokenStream.size(); ++i) {
+            assertEquals(expectedTokens.get(i).getType(), tokenStream.type(i));
+            assertEquals(expectedTokens.get(i).getValue(), tokenStream.text(i));
+            actualTokens.add(tokenStream.getNextToken());
+        }
+        assertEquals(expectedTokens, actualTokens);
+        assertEquals(".e+.5", inputStr.substring(tokenStream.start(6), tokenStream.start(6) +
+                tokenStream.length(6)));
+        assertEquals(1, tokenStream.line(7));
+        assertEquals(2, tokenStream.line(8));
+    }
+
+    @Test
+    public void testTokenStreamSharedTokensOfSameType() throws SyntaxError, IOException {
+        TypeInfo doubleType = new TypeInfo(new Token("double", TokenType.FLOAT_TYPE));
+        SymbolTable.getInstance().set(doubleType);
+        String inputStr = "var a: float = 1; var b: double = 2;\nvar c: double = 3; var d: float = 4;";
+        try {
+            ArrayList<Token> expectedTokens = testLexerHelper(inputStr);
+            TokenStream[] tokenStreams = {TokenStream.lex(inputStr), TokenStream.lexParallel(inputStr.toCharArray(),
+                    ForkJoinPool.commonPool(), 4, CancellationToken.NONE)};
+            for (TokenStream tokenStream : tokenStreams) {
+                assertEquals(expectedTokens.size(), tokenStream.size());
+                for (int i = 0; i < tokenStream.size(); ++i) {
+                    assertEquals(expectedTokens.get(i).getValue(), tokenStream.text(i));
+                    assertEquals(expectedTokens.get(i).getValue(), tokenStream.token(i).getValue());
+                }
+            }
+            assertEquals("double", tokenStreams[1].token(10).getValue());
+            assertEquals("float", tokenStreams[1].token(24).getValue());
+        } finally {
+            SymbolTable.getInstance().remove(doubleType);
+        }
+    }
+
+    @Test
+    public void testTokenStreamParallel() throws SyntaxError, IOException {
+        String inputStr = "var a: int = 52;\n  val b = a*(.e+.5 - 2.e-1);\n\nb = (a+b) * x1;;c=3 ;";
+        TokenStream expectedStream = TokenStream.lex(inputStr);
+        TokenStream actualStream = TokenStream.lexParallel(inputStr.toCharArray(), ForkJoinPool.commonPool(), 4,
+                CancellationToken.NONE);
+        assertEquals(expectedStream.size(), actualStream.size());
+        for (int i = 0; i < expectedStream.size(); ++i) {
+            assertEquals(expectedStream.type(i), actualStream.type(i));
+            assertEquals(expectedStream.start(i), actualStream.start(i));
+            assertEquals(expectedStream.text(i), actualStream.text(i));
+            assertEquals(expectedStream.line(i), actualStream.line(i));
+            assertEquals(expectedStream.getNextToken(), actualStream.getNextToken());
+        }
+        assertEquals(0.2, actualStream.doubleValue(15));
+        assertEquals(4, actualStream.line(actualStream.size() - 1));
+
+        // The first error in the input is reported
+        String invalidStr = "a = 1;\nb = 2e;\nc = 3$;";
+        String expectedMessage = assertThrows(SyntaxError.class, () -> TokenStream.lex(invalidStr)).getMessage();
+        assertEquals(expectedMessage, assertThrows(SyntaxError.class, () -> TokenStream.lexParallel(
+                invalidStr.toCharArray(), ForkJoinPool.commonPool(), 4, CancellationToken.NONE)).getMessage());
+
+        // Every chunk checks the cancellation token
+        char[] longChars = "a = 1;\n".repeat(1000).toCharArray();
+        assertThrows(CancellationError.class, () -> TokenStream.lexParallel(longChars, ForkJoinPool.commonPool(), 1024,
+                CancellationToken.withTimeout(Duration.ZERO)));
+    }
+
+    @Test
+    public void testTokenStreamMarkReset() throws SyntaxError, IOException {
+        TokenStream tokenStream = TokenStream.lex("a + 1");
+        assertEquals(new Token("a", TokenType.ID), tokenStream.getNextToken());
+        tokenStream.mark();
+        assertEquals(new Token("+", TokenType.ADD), tokenStream.getNextToken());
+        assertEquals(new Token("1", TokenType.INT), tokenStream.getNextToken());
+        assertNull(tokenStream.getNextToken());
+        tokenStream.reset();
+        assertEquals(1, tokenStream.getCursor());
+        assertEquals(new Token("+", TokenType.ADD), tokenStream.getNextToken());
+    }
+
+    @Test
+    public void testPipelinedTokenSource() throws SyntaxError, IOException {
+        String inputStr = "var a: int = 52;\n  b = a*(.e+.5 - 2.e-1);\n\nb = (a+b) * x1;;c=3 ;";
+        try (PipelinedTokenSource tokenSource = PipelinedTokenSource.start(new Lexer(new BufferedReader(
+                new StringReader(inputStr))), 4, 2)) {
+            ArrayList<Integer> expectedOffsets = new ArrayList<>();
+            ArrayList<Token> expectedTokens = getAllTokens(new Lexer(inputStr), expectedOffsets);
+            assertEquals(expectedTokens.get(0), tokenSource.getNextToken());
+            // Peek and mark across batches
+            assertEquals(expectedTokens.get(10), tokenSource.peek(9));
+            tokenSource.mark();
+            for (int i = 1; i < 12; ++i) {
+                assertEquals(expectedTokens.get(i), tokenSource.getNextToken());
+            }
+            tokenSource.reset();
+            ArrayList<Token> actualTokens = new ArrayList<>(expectedTokens.subList(0, 1));
+            Token token;
+            while ((token = tokenSource.getNextToken()) != null) {
+                actualTokens.add(token);
+                assertEquals(expectedOffsets.get(actualTokens.size() - 1), tokenSource.getTokenOffset());
+                if (token.getValue().equals("x1")) {
+                    assertEquals(4, tokenSource.getCurrLine());
+                }
+            }
+            assertEquals(expectedTokens, actualTokens);
+            assertNull(tokenSource.peek(0));
+        }
+
+        // A syntax error is thrown after the tokens before it
+        String invalidStr = "a = 1;\nb = 2;\nc = 3$;";
+        String expectedMessage = assertThrows(SyntaxError.class, () -> testLexerHelper(invalidStr)).getMessage();
+        try (PipelinedTokenSource tokenSource = PipelinedTokenSource.start(new Lexer(new BufferedReader(
+                new StringReader(invalidStr))), 2, 1)) {
+            for (int i = 0; i < 10; ++i) {
+                assertEquals(testLexerHelper("a = 1;\nb = 2;\nc = 3").get(i), tokenSource.getNextToken());
+            }
+            assertEquals(expectedMessage, assertThrows(SyntaxError.class, tokenSource::getNextToken).getMessage());
+        }
+
+        // An error that stops the lexer thread is thrown to the consumer rather than leaving it waiting
+        Reader failingReader = new Reader() {
+            @Override
+            public int read(char[] chars, int offset, int length) {
+                throw new OutOfMemoryError("Cannot read");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try (PipelinedTokenSource tokenSource = PipelinedTokenSource.start(new Lexer(new BufferedReader(failingReader)),
+                2, 1)) {
+            OutOfMemoryError error = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                    () -> assertThrows(OutOfMemoryError.class, tokenSource::getNextToken));
+            assertEquals("Cannot read", error.getMessage());
+        }
+    }
 }
\ No newline at end of file
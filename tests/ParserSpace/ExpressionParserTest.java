@@ -2,6 +2,7 @@ package ParserSpace;
 
 import Exceptions.SyntaxError;
 import LexerSpace.Lexer;
+import LexerSpace.TokenStream;
 import Symbols.IDInfo;
 import Symbols.SymbolTable;
 import Symbols.TypeInfo;
@@ -12,8 +13,15 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ExpressionParserTest {
 
@@ -36,6 +44,14 @@ class ExpressionParserTest {
         return exprParser.getPostfixOrder(infixNodes);
     }
 
+    private void assertTreeEquals(Node expectedNode, Node actualNode) {
+        assertEquals(expectedNode, actualNode);
+        assertEquals(expectedNode.getNumChildren(), actualNode.getNumChildren());
+        for (int i = 0; i < expectedNode.getNumChildren(); ++i) {
+            assertTreeEquals(expectedNode.getChild(i), actualNode.getChild(i));
+        }
+    }
+
     @Test
     void testGetEmptyExprInfixNodes() {
         String inputStr = "";
@@ -170,4 +186,253 @@ class ExpressionParserTest {
             e.printStackTrace();
         }
     }
+
+    @Test
+    void testGetExprInfixNodesFromTokenStream() throws SyntaxError, IOException {
+        String inputStr = "    a+a  *(-2.e-1+--(75))\t";
+
+        // Set up the symbol table
+        SymbolTable symbolTable = SymbolTable.getInstance();
+        TypeInfo type = (TypeInfo) symbolTable.getType(Global.INT_TYPE_ID);
+        symbolTable.set(new IDInfo(new Token("a", TokenType.ID), Global.globalScope, type, true));
+
+        ArrayList<TokenNode> expectedInfixNodes = getExprInfixNodesHelper(inputStr, Global.globalScope);
+        ExpressionParser exprParser = new ExpressionParser(TokenStream.lex(inputStr));
+        ArrayList<TokenNode> actualInfixNodes = exprParser.getExpressionInfixNodes(Global.globalScope);
+        assertEquals(expectedInfixNodes, actualInfixNodes);
+    }
+
+    @Test
+    void testParseExpressionMatchesPostfixAST() throws SyntaxError, IOException {
+        String[] inputStrs = {
+                "",
+                "\t \n\n",
+                "\na \n*\nb+ .e-. /34.*-41--+35/c+\t((777-4)+12 \n*95)",
+                "    a+a  *(-2.e-1+--(75))\t",
+                "a+\ta \n*(-2.e-1\n+-\n-(75))",
+                "a = b = c - a * -(b / 2)"
+        };
+
+        // Set up the symbol table
+        SymbolTable symbolTable = SymbolTable.getInstance();
+        TypeInfo intType = (TypeInfo) symbolTable.getType(Global.INT_TYPE_ID);
+        TypeInfo floatType = (TypeInfo) symbolTable.getType(Global.FLOAT_TYPE_ID);
+        symbolTable.set(new IDInfo(new Token("a", TokenType.ID), Global.globalScope, intType, true));
+        symbolTable.set(new IDInfo(new Token("b", TokenType.ID), Global.globalScope, intType, true));
+        symbolTable.set(new IDInfo(new Token("c", TokenType.ID), Global.globalScope, floatType, true));
+
+        for (String inputStr : inputStrs) {
+            ExpressionParser exprParser = initExprParser(inputStr);
+            Node expectedRoot = exprParser.buildASTFromPostFix(
+                    exprParser.getPostfixOrder(exprParser.getExpressionInfixNodes(Global.globalScope)));
+            Node actualRoot = initExprParser(inputStr).parseExpression(Global.globalScope);
+            if (expectedRoot == null) {
+                assertEquals(expectedRoot, actualRoot);
+            } else {
+                assertTreeEquals(expectedRoot, actualRoot);
+            }
+        }
+    }
+
+    @Test
+    void testParseDeeplyNestedExpression() throws SyntaxError, IOException {
+        // Nested parentheses, a chain of unary operators and a chain of right-to-left operators
+        int depth = 100000;
+        String inputStr = "(".repeat(depth) + "-".repeat(depth) + "a" + " = a".repeat(depth) + ")".repeat(depth);
+
+        // Set up the symbol table
+        SymbolTable symbolTable = SymbolTable.getInstance();
+        TypeInfo type = (TypeInfo) symbolTable.getType(Global.INT_TYPE_ID);
+        symbolTable.set(new IDInfo(new Token("a", TokenType.ID), Global.globalScope, type, true));
+
+        Node exprRoot = new ExpressionParser(TokenStream.lex(inputStr)).parseExpression(Global.globalScope);
+        int[] numVisits = new int[3];
+        new ASTTraversal(new IASTNodeVisitor() {
+            private int currDepth = 0;
+
+            @Override
+            public void visit(Node node) {
+                ++numVisits[0];
+                numVisits[2] = Math.max(numVisits[2], ++currDepth);
+            }
+
+            @Override
+            public void backtrack(Node node) {
+                ++numVisits[1];
+                --currDepth;
+            }
+        }).traverse(exprRoot);
+        // The EXPR root, the unary operators, the IDs and the assignments
+        assertEquals(3 * depth + 2, numVisits[0]);
+        assertEquals(numVisits[0], numVisits[1]);
+        // The deepest path goes through the root, the first assignment, the unary operators and an ID
+        assertEquals(depth + 3, numVisits[2]);
+
+        // The parentheses left open by a syntax error do not match a ')' in the next expression
+        TokenStream tokenStream = TokenStream.lex("(a + ; a)");
+        ExpressionParser exprParser = new ExpressionParser(tokenStream);
+        assertThrows(SyntaxError.class, () -> exprParser.parseExpression(Global.globalScope));
+        tokenStream.setCursor(4);
+        SyntaxError syntaxError = assertThrows(SyntaxError.class, () ->
+                exprParser.parseExpression(Global.globalScope));
+        assertEquals("Redundant ')' on line 1", syntaxError.getMessage());
+    }
+
+    @Test
+    void testParseExpressionLazily() throws SyntaxError, IOException {
+        String[] inputStrs = {
+                "\na \n*\nb+ .e-. /34.*-41--+35/c+\t((777-4)+12 \n*95)",
+                "    a+a  *(-2.e-1+--(75))\t",
+                "a = b = c - a * -(b / 2)",
+                "(((a)))",
+                "a + b"
+        };
+
+        // Set up the symbol table
+        SymbolTable symbolTable = SymbolTable.getInstance();
+        TypeInfo intType = (TypeInfo) symbolTable.getType(Global.INT_TYPE_ID);
+        TypeInfo floatType = (TypeInfo) symbolTable.getType(Global.FLOAT_TYPE_ID);
+        symbolTable.set(new IDInfo(new Token("a", TokenType.ID), Global.globalScope, intType, true));
+        symbolTable.set(new IDInfo(new Token("b", TokenType.ID), Global.globalScope, intType, true));
+        symbolTable.set(new IDInfo(new Token("c", TokenType.ID), Global.globalScope, floatType, true));
+
+        assertNull(initExprParser("").parseExpressionLazily(Global.globalScope));
+        for (String inputStr : inputStrs) {
+            LazyExpression expr = initExprParser(inputStr).parseExpressionLazily(Global.globalScope);
+            ExpressionParser exprParser = initExprParser(inputStr);
+            LazyExpression postfixExpr = LazyExpression.of(
+                    exprParser.getPostfixOrder(exprParser.getExpressionInfixNodes(Global.globalScope)));
+
+            // The type, the IDs and the fingerprint do not build the AST
+            assertEquals(postfixExpr.getFingerprint(), expr.getFingerprint());
+            assertEquals(postfixExpr.getIDs(), expr.getIDs());
+            assertEquals(postfixExpr.getType(), expr.getType());
+            assertFalse(expr.isMaterialized());
+
+            assertTreeEquals(initExprParser(inputStr).parseExpression(Global.globalScope), expr.getRoot());
+            assertTrue(expr.isMaterialized());
+            assertSame(expr.getRoot(), expr.getRoot());
+        }
+
+        LazyExpression expr = initExprParser("a = b = c - a * -(b / 2)").parseExpressionLazily(Global.globalScope);
+        assertEquals(List.of("a", "b", "c"), new ArrayList<>(expr.getIDs()));
+        assertNull(expr.getType());
+        assertEquals(TokenType.ASSIGNMENT, expr.getRootToken().getType());
+        assertEquals(intType, initExprParser("a + b").parseExpressionLazily(Global.globalScope).getType());
+        assertNotEquals(initExprParser("a - b").parseExpressionLazily(Global.globalScope).getFingerprint(),
+                initExprParser("b - a").parseExpressionLazily(Global.globalScope).getFingerprint());
+
+        // The names have the same 32-bit string hash code but not the same fingerprint
+        Block fingerprintScope = new Block("fingerprint", null);
+        symbolTable.set(new IDInfo(new Token("Aa", TokenType.ID), fingerprintScope, intType, true));
+        symbolTable.set(new IDInfo(new Token("BB", TokenType.ID), fingerprintScope, intType, true));
+        assertNotEquals(initExprParser("Aa + 1").parseExpressionLazily(fingerprintScope).getFingerprint(),
+                initExprParser("BB + 1").parseExpressionLazily(fingerprintScope).getFingerprint());
+    }
+
+    @Test
+    void testParseAll() throws SyntaxError, IOException {
+        String[] inputStrs = {
+                "\na \n*\nb+ .e-. /34.*-41--+35/c+\t((777-4)+12 \n*95)",
+                "",
+                "    a+a  *(-2.e-1+--(75))\t",
+                "a = b = c - a * -(b / 2)",
+                "c"
+        };
+
+        // Set up the symbol table
+        SymbolTable symbolTable = SymbolTable.getInstance();
+        TypeInfo intType = (TypeInfo) symbolTable.getType(Global.INT_TYPE_ID);
+        TypeInfo floatType = (TypeInfo) symbolTable.getType(Global.FLOAT_TYPE_ID);
+        symbolTable.set(new IDInfo(new Token("a", TokenType.ID), Global.globalScope, intType, true));
+        symbolTable.set(new IDInfo(new Token("b", TokenType.ID), Global.globalScope, intType, true));
+        symbolTable.set(new IDInfo(new Token("c", TokenType.ID), Global.globalScope, floatType, true));
+
+        ExpressionParser exprParser = new ExpressionParser(new Lexer(""));
+        List<Node> roots = exprParser.parseAll(List.of(inputStrs), Global.globalScope);
+        assertEquals(inputStrs.length, roots.size());
+        for (int i = 0; i < inputStrs.length; ++i) {
+            Node expectedRoot = initExprParser(inputStrs[i]).parseExpression(Global.globalScope);
+            if (expectedRoot == null) {
+                assertNull(roots.get(i));
+            } else {
+                assertTreeEquals(expectedRoot, roots.get(i));
+            }
+        }
+
+        // The parser is restarted after a syntax error, whose line is counted from the start of its input
+        SyntaxError syntaxError = assertThrows(SyntaxError.class, () ->
+                exprParser.parseAll(List.of("a", "(a\n+ b"), Global.globalScope));
+        assertEquals("Missing ')' on line 2", syntaxError.getMessage());
+        syntaxError = assertThrows(SyntaxError.class, () ->
+                exprParser.parseAll(List.of("a;"), Global.globalScope));
+        assertEquals("Invalid expression syntax at ';' on line 1", syntaxError.getMessage());
+        assertTreeEquals(initExprParser("a + (b)").parseExpression(Global.globalScope),
+                exprParser.parseAll(List.of("a + (b)"), Global.globalScope).get(0));
+
+        // A parser over another token source cannot be restarted
+        assertThrows(IllegalStateException.class, () ->
+                new ExpressionParser(TokenStream.lex("a")).parseAll(List.of("a"), Global.globalScope));
+    }
+
+    @Test
+    void testFlatAST() throws SyntaxError, IOException {
+        String[] inputStrs = {
+                "\na \n*\nb+ .e-. /34.*-41--+35/c+\t((777-4)+12 \n*95)",
+                "    a+a  *(-2.e-1+--(75))\t",
+                "a = b = c - a * -(b / 2)",
+                "c"
+        };
+
+        // Set up the symbol table
+        SymbolTable symbolTable = SymbolTable.getInstance();
+        TypeInfo intType = (TypeInfo) symbolTable.getType(Global.INT_TYPE_ID);
+        TypeInfo floatType = (TypeInfo) symbolTable.getType(Global.FLOAT_TYPE_ID);
+        symbolTable.set(new IDInfo(new Token("a", TokenType.ID), Global.globalScope, intType, true));
+        symbolTable.set(new IDInfo(new Token("b", TokenType.ID), Global.globalScope, intType, true));
+        symbolTable.set(new IDInfo(new Token("c", TokenType.ID), Global.globalScope, floatType, true));
+
+        FlatAST ast = new FlatAST();
+        assertEquals(FlatAST.NONE, ast.add((Node) null));
+        assertEquals(FlatAST.NONE, ast.add((LazyExpression) null));
+        for (String inputStr : inputStrs) {
+            Node expectedRoot = initExprParser(inputStr).parseExpression(Global.globalScope);
+            LazyExpression expr = initExprParser(inputStr).parseExpressionLazily(Global.globalScope);
+            int root = ast.add(expectedRoot);
+            int lazyRoot = ast.add(expr);
+            assertFalse(expr.isMaterialized());
+
+            // Both trees are laid out in the same preorder, one after the other
+            assertEquals(lazyRoot, ast.getSubtreeEnd(root));
+            for (int handle = root; handle < lazyRoot; ++handle) {
+                int lazyHandle = lazyRoot + handle - root;
+                assertEquals(ast.getNodeType(handle), ast.getNodeType(lazyHandle));
+                assertEquals(ast.getToken(handle), ast.getToken(lazyHandle));
+                assertEquals(ast.getType(handle), ast.getType(lazyHandle));
+            }
+            assertTreeEquals(expectedRoot, ast.getNode(root));
+            assertTreeEquals(expectedRoot, ast.getNode(lazyRoot));
+        }
+        assertEquals(inputStrs.length * 2, ast.getNumRoots());
+
+        // The children of a binary operator are its right operand and then its left operand
+        int opHandle = ast.getFirstChild(ast.getRoot(ast.getNumRoots() - 3));
+        assertEquals(TokenType.ASSIGNMENT, ast.getTokenType(opHandle));
+        assertEquals(2, ast.getNumChildren(opHandle));
+        assertEquals(TokenType.ASSIGNMENT, ast.getTokenType(ast.getChild(opHandle, 0)));
+        assertEquals("a", ast.getTokenText(ast.getNextSibling(ast.getFirstChild(opHandle))));
+        assertEquals(intType, ast.getType(ast.getChild(opHandle, 1)));
+
+        // Null children are kept and the views cannot be changed
+        Node stmtRoot = new Node(NodeType.ASSIGNMENT);
+        stmtRoot.addChild(new Node(NodeType.MUTABLE_ID_DECL));
+        stmtRoot.addChild(null);
+        int stmtHandle = ast.add(stmtRoot);
+        assertEquals(2, ast.getNumChildren(stmtHandle));
+        assertNull(ast.getNodeType(ast.getChild(stmtHandle, 1)));
+        assertNull(ast.getNode(stmtHandle).getChild(1));
+        assertThrows(UnsupportedOperationException.class, () ->
+                ast.getNode(stmtHandle).addChild(new Node(NodeType.EXPR)));
+        assertThrows(IndexOutOfBoundsException.class, () -> ast.getChild(stmtHandle, 2));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,204 @@
+package ParserSpace;
+
+import Exceptions.CancellationError;
+import Exceptions.SyntaxError;
+import Symbols.IDInfo;
+import Symbols.SymbolTable;
+import Symbols.TypeInfo;
+import Utilities.CancellationToken;
+import Utilities.Global;
+import Utilities.Token;
+import Utilities.TokenType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParsedSourceTest {
+
+    @BeforeEach
+    void setUpSymbolTable() {
+        SymbolTable symbolTable = SymbolTable.getInstance();
+        TypeInfo intType = (TypeInfo) symbolTable.getType(Global.INT_TYPE_ID);
+        symbolTable.set(new IDInfo(new Token("a", TokenType.ID), Global.globalScope, intType, true));
+        symbolTable.set(new IDInfo(new Token("b", TokenType.ID), Global.globalScope, intType, true));
+    }
+
+    private String describeTree(Node node) {
+        if (node == null) {
+            return "null";
+        }
+        StringBuilder description = new StringBuilder(node.toString()).append('[');
+        for (int i = 0; i < node.getNumChildren(); ++i) {
+            description.append(describeTree(node.getChild(i)));
+        }
+        return description.append(']').toString();
+    }
+
+    private void assertSameParse(ParsedSource expected, ParsedSource actual) {
+        assertEquals(expected.getText(), actual.getText());
+        assertEquals(expected.getNumStatements(), actual.getNumStatements());
+        for (int i = 0; i < expected.getNumStatements(); ++i) {
+            assertEquals(expected.getOffset(i), actual.getOffset(i));
+            assertEquals(expected.getLine(i), actual.getLine(i));
+            assertEquals(describeTree(expected.getStatement(i)), describeTree(actual.getStatement(i)));
+            SyntaxError syntaxError = expected.getSyntaxError(i);
+            assertEquals(syntaxError == null ? null : syntaxError.getMessage(),
+                    actual.getSyntaxError(i) == null ? null : actual.getSyntaxError(i).getMessage());
+        }
+    }
+
+    @Test
+    void testParseStatements() throws IOException {
+        String inputStr = "a = 1;\n  b = a + 2.5;\nb * (a - 1)";
+        ParsedSource parsedSource = ParsedSource.parse(inputStr, Global.globalScope);
+        assertEquals(3, parsedSource.getNumStatements());
+        assertEquals(6, parsedSource.getOffset(1));
+        // A statement starts right after the previous ';', before the line break
+        assertEquals(1, parsedSource.getLine(1));
+        assertEquals(2, parsedSource.getLine(2));
+        assertEquals(NodeType.ASSIGNMENT, NodeType.valueOf(parsedSource.getStatement(0).toString()));
+        assertEquals(NodeType.ASSIGNMENT, NodeType.valueOf(parsedSource.getStatement(1).toString()));
+        assertEquals(NodeType.EXPR, NodeType.valueOf(parsedSource.getStatement(2).toString()));
+        assertNull(parsedSource.getFirstSyntaxError());
+        assertEquals(inputStr, parsedSource.getText());
+    }
+
+    @Test
+    void testEditReusesStatements() throws IOException {
+        String inputStr = "a = 1;\nb = a + 2.5;\nb * (a - 1);\n";
+        ParsedSource parsedSource = ParsedSource.parse(inputStr, Global.globalScope);
+        Node first = parsedSource.getStatement(0);
+        Node second = parsedSource.getStatement(1);
+        Node third = parsedSource.getStatement(2);
+
+        // Replace "2.5" by "(2.5 * a)"
+        parsedSource.edit(15, 3, "(2.5 * a)");
+        String editedStr = "a = 1;\nb = a + (2.5 * a);\nb * (a - 1);\n";
+        assertSameParse(ParsedSource.parse(editedStr, Global.globalScope), parsedSource);
+        assertSame(first, parsedSource.getStatement(0));
+        assertNotSame(second, parsedSource.getStatement(1));
+        assertSame(third, parsedSource.getStatement(2));
+    }
+
+    @Test
+    void testEditSplitsAndMergesStatements() throws IOException {
+        String inputStr = "a = 1;\nb = a + 2.5;\n\nb * (a - 1)";
+        ParsedSource parsedSource = ParsedSource.parse(inputStr, Global.globalScope);
+
+        // Splitting the second statement leaves its second half as an expression
+        parsedSource.edit(12, 0, ";");
+        assertEquals(4, parsedSource.getNumStatements());
+        assertEquals(NodeType.EXPR, NodeType.valueOf(parsedSource.getStatement(2).toString()));
+        assertNull(parsedSource.getFirstSyntaxError());
+
+        // Removing the ';' of the first statement merges it with the next one
+        parsedSource.edit(5, 1, "");
+        assertSameParse(ParsedSource.parse("a = 1\nb = a; + 2.5;\n\nb * (a - 1)", Global.globalScope),
+                parsedSource);
+        assertEquals("Invalid binary operator 'b' on line 2", parsedSource.getFirstSyntaxError().getMessage());
+
+        // The lines of the errors follow the line breaks inserted before them
+        parsedSource.edit(0, 0, "\n\n");
+        assertEquals("Invalid binary operator 'b' on line 4", parsedSource.getSyntaxError(0).getMessage());
+        parsedSource.edit(0, 2, "");
+        parsedSource.edit(29, 0, "$");
+        assertEquals("Unable to get next token because of invalid syntax on line 4",
+                parsedSource.getSyntaxError(2).getMessage());
+    }
+
+    @Test
+    void testEditDeclaration() throws IOException {
+        String inputStr = "var declared: int = 1;\ndeclared * 2";
+        ParsedSource parsedSource = ParsedSource.parse(inputStr, Global.globalScope);
+        assertNull(parsedSource.getFirstSyntaxError());
+
+        // The edited declaration is parsed again without redeclaring its variable
+        parsedSource.edit(20, 1, "(a + 1)");
+        assertNull(parsedSource.getFirstSyntaxError());
+        assertEquals(NodeType.MUTABLE_ID_DECL, parsedSource.getStatement(0).getChild(0).getNodeType());
+    }
+
+    @Test
+    void testParseSourceTwice() throws IOException {
+        String inputStr = "var reparsed: int = 1;\nreparsed * 2";
+        // The declarations of a parsed source are not added to the symbol table, so the source can be parsed again
+        ParsedSource parsedSource = ParsedSource.parse(inputStr, Global.globalScope);
+        assertNull(parsedSource.getFirstSyntaxError());
+        assertFalse(SymbolTable.getInstance().isID("reparsed", Global.globalScope));
+        assertSameParse(parsedSource, ParsedSource.parse(inputStr, Global.globalScope));
+    }
+
+    @Test
+    void testEditDependentStatements() throws IOException {
+        String inputStr = "1; var later: int = 2;\nvar used: int = 3; used + 1";
+        // A statement does not see the variables declared after it
+        ParsedSource parsedSource = ParsedSource.parse(inputStr, Global.globalScope);
+        parsedSource.edit(0, 1, "later");
+        assertEquals("Invalid variable 'later' on line 1", parsedSource.getSyntaxError(0).getMessage());
+        assertSameParse(ParsedSource.parse(parsedSource.getText(), Global.globalScope), parsedSource);
+
+        // The statements that use a removed declaration are parsed again
+        int offset = parsedSource.getOffset(2);
+        parsedSource.edit(offset, parsedSource.getOffset(3) - offset, "");
+        assertEquals("Invalid variable 'used' on line 1", parsedSource.getSyntaxError(2).getMessage());
+        assertSameParse(ParsedSource.parse(parsedSource.getText(), Global.globalScope), parsedSource);
+
+        // And so are the statements that use an added declaration
+        parsedSource.edit(offset, 0, "var used: float = 3.5;");
+        assertNull(parsedSource.getSyntaxError(3));
+        assertSameParse(ParsedSource.parse(parsedSource.getText(), Global.globalScope), parsedSource);
+    }
+
+    @Test
+    void testEditManyStatements() throws IOException {
+        StringBuilder inputStr = new StringBuilder();
+        for (int i = 0; i < 300; ++i) {
+            if (i % 10 == 0) {
+                inputStr.append("var many").append(i).append(": int = ").append(i).append(";\n");
+            } else {
+                inputStr.append("a = many").append(i / 10 * 10).append(" * ").append(i).append(";\n");
+            }
+        }
+        ParsedSource parsedSource = ParsedSource.parse(inputStr, Global.globalScope);
+        Node lastStatement = parsedSource.getStatement(299);
+
+        // Statements are split, merged and edited anywhere, and their declarations are added, removed and changed
+        String[] insertedTexts = {";", "", "a", " * (b", "var many5: float = 1.5;", "int", "float", ";\n;"};
+        Random random = new Random(42);
+        for (int i = 0; i < 200; ++i) {
+            String text = parsedSource.getText();
+            int offset = random.nextInt(text.lastIndexOf("var many280"));
+            int removedLength = random.nextInt(Math.min(8, text.length() - offset) + 1);
+            parsedSource.edit(offset, removedLength, insertedTexts[random.nextInt(insertedTexts.length)]);
+            assertSameParse(ParsedSource.parse(parsedSource.getText(), Global.globalScope), parsedSource);
+        }
+        assertSame(lastStatement, parsedSource.getStatement(parsedSource.getNumStatements() - 2));
+    }
+
+    @Test
+    void testCancellation() throws IOException {
+        String inputStr = "a = a + 1;\n".repeat(1000);
+        CancellationToken expiredToken = CancellationToken.withTimeout(Duration.ZERO);
+        assertThrows(CancellationError.class, () -> ParsedSource.parse(inputStr, Global.globalScope, expiredToken));
+        // The lexer and the parser of a long statement check the token too
+        assertThrows(CancellationError.class, () ->
+                ParsedSource.parse("a" + " + a".repeat(1000), Global.globalScope, expiredToken));
+
+        // An edit that is not cancelled is applied, and a cancelled one leaves the parsed source unusable
+        ParsedSource parsedSource = ParsedSource.parse(inputStr, Global.globalScope, CancellationToken.create());
+        parsedSource.edit(0, 0, "b = 2;", CancellationToken.create());
+        assertEquals(1002, parsedSource.getNumStatements());
+        assertThrows(CancellationError.class, () -> parsedSource.edit(0, 0, "b = 1;\n".repeat(1000), expiredToken));
+        assertThrows(IllegalStateException.class, () -> parsedSource.edit(0, 0, ""));
+    }
+}
\ No newline at end of file
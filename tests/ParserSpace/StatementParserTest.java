@@ -0,0 +1,303 @@
+package ParserSpace;
+
+import Exceptions.CancellationError;
+import Exceptions.Diagnostic;
+import Exceptions.SyntaxError;
+import Exceptions.UncheckedSyntaxError;
+import LexerSpace.Lexer;
+import LexerSpace.PipelinedTokenSource;
+import LexerSpace.TokenStream;
+import Symbols.IDInfo;
+import Symbols.SymbolTable;
+import Symbols.TypeInfo;
+import Utilities.Block;
+import Utilities.CancellationToken;
+import Utilities.Global;
+import Utilities.Token;
+import Utilities.TokenType;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatementParserTest {
+
+    private StatementParser initStatementParser(String inputStr) {
+        BufferedReader reader = new BufferedReader(new StringReader(inputStr));
+        return new StatementParser(new ExpressionParser(new Lexer(reader)));
+    }
+
+    private void assertTreeEquals(Node expectedNode, Node actualNode) {
+        assertEquals(expectedNode, actualNode);
+        assertEquals(expectedNode.getNumChildren(), actualNode.getNumChildren());
+        for (int i = 0; i < expectedNode.getNumChildren(); ++i) {
+            assertTreeEquals(expectedNode.getChild(i), actualNode.getChild(i));
+        }
+    }
+
+    @Test
+    void testParseProgram() {
+        String inputStr = "var total: int = 1;\n total = total * (2 + 3);;\n\n-total / 2.5";
+        Block scope = new Block("program", null);
+        Iterator<Node> statements = initStatementParser(inputStr).parseProgram(scope);
+
+        // The declared variable can be used by the statements after the declaration
+        Node statementRoot = statements.next();
+        assertEquals(NodeType.ASSIGNMENT, statementRoot.getNodeType());
+        assertEquals(NodeType.MUTABLE_ID_DECL, statementRoot.getChild(0).getNodeType());
+        assertEquals(new Token("total", TokenType.ID), ((TokenNode) statementRoot.getChild(0).getChild(0)).getToken());
+        assertEquals(NodeType.EXPR, statementRoot.getChild(1).getNodeType());
+        assertTrue(SymbolTable.getInstance().isID("total", scope));
+
+        statementRoot = statements.next();
+        assertEquals(NodeType.ASSIGNMENT, statementRoot.getNodeType());
+        assertEquals(NodeType.ID_REASSIGNMENT, statementRoot.getChild(0).getNodeType());
+        assertEquals(new Token("*", TokenType.MULT), ((TokenNode) statementRoot.getChild(1).getChild(0)).getToken());
+
+        // The empty statement is skipped and the last statement does not need ';'
+        assertTrue(statements.hasNext());
+        statementRoot = statements.next();
+        assertEquals(NodeType.EXPR, statementRoot.getNodeType());
+        assertEquals(new Token("/", TokenType.DIV), ((TokenNode) statementRoot.getChild(0)).getToken());
+        assertFalse(statements.hasNext());
+    }
+
+    @Test
+    void testParseProgramSyntaxError() {
+        String inputStr = "var self: int = 1 + self;";
+        Iterator<Node> statements = initStatementParser(inputStr).parseProgram(Global.globalScope);
+        UncheckedSyntaxError e = assertThrows(UncheckedSyntaxError.class, statements::next);
+        assertEquals("Invalid variable 'self' on line 1", e.getCause().getMessage());
+
+        // The lines of the parsed statements may be discarded, but the line of the error is still counted from the
+        // start of the input
+        statements = initStatementParser("1;\n".repeat(1000) + "\n1 + ;").parseProgram(Global.globalScope);
+        for (int i = 0; i < 1000; ++i) {
+            statements.next();
+        }
+        e = assertThrows(UncheckedSyntaxError.class, statements::next);
+        assertEquals("Missing a valid expression after '+' on line 1002", e.getCause().getMessage());
+    }
+
+    @Test
+    void testStreamProgram() {
+        // Set up the symbol table
+        SymbolTable symbolTable = SymbolTable.getInstance();
+        TypeInfo type = (TypeInfo) symbolTable.getType(Global.INT_TYPE_ID);
+        Block scope = new Block("stream", null);
+        symbolTable.set(new IDInfo(new Token("counter", TokenType.ID), scope, type, true));
+
+        int numStatements = 100000;
+        String inputStr = "counter = counter + 1;\n".repeat(numStatements);
+        long numAssignments = initStatementParser(inputStr).streamProgram(scope)
+                .filter(statementRoot -> statementRoot.getNodeType() == NodeType.ASSIGNMENT)
+                .count();
+        assertEquals(numStatements, numAssignments);
+    }
+
+    @Test
+    void testStreamProgramPipelined() {
+        StringBuilder inputStr = new StringBuilder();
+        for (int i = 0; i < 1000; ++i) {
+            inputStr.append("var piped").append(i).append(": int = ").append(i).append(" * 2;\n");
+            inputStr.append("piped").append(i).append(" = piped").append(i).append(" + 1;\n");
+        }
+        inputStr.append("piped0 = (piped1;\n");
+        String programStr = inputStr.toString();
+
+        BufferedReader reader = new BufferedReader(new StringReader(programStr));
+        try (PipelinedTokenSource tokenSource = PipelinedTokenSource.start(new Lexer(reader), 16, 2)) {
+            Iterator<Node> statementRoots = new StatementParser(new ExpressionParser(tokenSource))
+                    .parseProgram(new Block("pipelined", null));
+            for (int i = 0; i < 2000; ++i) {
+                assertEquals(NodeType.ASSIGNMENT, statementRoots.next().getNodeType());
+            }
+            UncheckedSyntaxError e = assertThrows(UncheckedSyntaxError.class, statementRoots::next);
+            assertEquals(2001, e.getCause().getLine());
+        }
+    }
+
+    @Test
+    void testParseProgramParallel() throws SyntaxError, IOException {
+        StringBuilder inputStr = new StringBuilder();
+        for (int i = 0; i < 50; ++i) {
+            inputStr.append("var par").append(i).append(": int = ").append(i).append(" * 2;\n");
+            inputStr.append("par").append(i).append(" = par").append(i).append(" + (par0 - 1);;\n");
+        }
+        String programStr = inputStr.toString();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Block sequentialScope = new Block("sequential", null);
+            ArrayList<Node> expectedRoots = new ArrayList<>();
+            initStatementParser(programStr).parseProgram(sequentialScope).forEachRemaining(expectedRoots::add);
+            Block parallelScope = new Block("parallel", null);
+            List<Node> actualRoots = StatementParser.parseProgramParallel(TokenStream.lex(programStr), parallelScope,
+                    pool, 4, CancellationToken.NONE);
+            assertEquals(expectedRoots.size(), actualRoots.size());
+            for (int i = 0; i < expectedRoots.size(); ++i) {
+                assertTreeEquals(expectedRoots.get(i), actualRoots.get(i));
+            }
+            assertTrue(SymbolTable.getInstance().isID("par49", parallelScope));
+
+            // A variable used before its declaration is reported as by a sequential parsing
+            String invalidStr = "var early: int = 1;\nearly = late + 1;\nvar late: int = 2;\nlate = 3 +;";
+            Block invalidScope = new Block("invalid", null);
+            SyntaxError e = assertThrows(SyntaxError.class, () ->
+                    StatementParser.parseProgramParallel(TokenStream.lex(invalidStr), invalidScope, pool, 1,
+                            CancellationToken.NONE));
+            assertEquals("Invalid variable 'late' on line 2", e.getMessage());
+            assertTrue(SymbolTable.getInstance().isID("early", invalidScope));
+            assertFalse(SymbolTable.getInstance().isID("late", invalidScope));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testValidateProgram() throws SyntaxError, IOException {
+        String programStr = "var valid: int = 2 * (3 + -1);\n;valid = valid / 2;\nvalid - 1";
+        Block scope = new Block("validation", null);
+        StringBuilder events = new StringBuilder();
+        IParseListener listener = new IParseListener() {
+            @Override
+            public void enterStatement(NodeType statementType, Token idToken) {
+                events.append(statementType).append(idToken != null ? " " + idToken.getValue() : "").append(" {");
+            }
+
+            @Override
+            public void operand(Token token) {
+                events.append(' ').append(token.getValue());
+            }
+
+            @Override
+            public void operator(Token token, TokenType opType) {
+                events.append(' ').append(opType);
+            }
+
+            @Override
+            public void exitStatement() {
+                events.append(" }");
+            }
+        };
+        initStatementParser(programStr).validateProgram(scope, listener);
+        assertEquals("MUTABLE_ID_DECL valid { 2 MULT LPAREN 3 ADD MINUS 1 RPAREN }" +
+                "ID_REASSIGNMENT valid { valid DIV 2 }EXPR { valid SUB 1 }", events.toString());
+        assertTrue(SymbolTable.getInstance().isID("valid", scope));
+
+        // The syntax error is the same as the one of a full parsing
+        String invalidStr = "var checked: int = 1;\nchecked = (checked + 2;";
+        Block invalidScope = new Block("invalidValidation", null);
+        SyntaxError e = assertThrows(SyntaxError.class, () ->
+                initStatementParser(invalidStr).validateProgram(invalidScope, null));
+        assertEquals("Missing ')' on line 2", e.getMessage());
+    }
+
+    @Test
+    void testParseProgramRecovering() throws IOException {
+        String programStr = "var recovered: int = 1;\nrecovered = (recovered + ;\nvar ;\nrecovered = 2$ + 1;\n" +
+                "var other: int = recovered * 2;;\nother = unknown;\nother + 1)";
+        Block scope = new Block("recovery", null);
+        ArrayList<Diagnostic> diagnostics = new ArrayList<>();
+        List<Node> roots = initStatementParser(programStr).parseProgramRecovering(scope, diagnostics);
+        assertEquals(2, roots.size());
+        assertTrue(SymbolTable.getInstance().isID("other", scope));
+        ArrayList<String> messages = new ArrayList<>();
+        for (Diagnostic diagnostic : diagnostics) {
+            messages.add(diagnostic.getMessage());
+        }
+        assertEquals(List.of("Missing a valid expression after '+' on line 2",
+                "Cannot use an operator as a variable name on line 3",
+                "Invalid numeric expression after '2' on line 4",
+                "Invalid variable 'unknown' on line 6",
+                "Redundant ')' on line 7"), messages);
+
+        // Syntax errors do not capture stack traces
+        SyntaxError e = assertThrows(SyntaxError.class, () -> initStatementParser("(1").parseStatement(scope));
+        assertEquals(0, e.getStackTrace().length);
+    }
+
+    @Test
+    void testCancellation() throws SyntaxError, IOException {
+        Block scope = new Block("cancellation", null);
+        TypeInfo type = (TypeInfo) SymbolTable.getInstance().getType(Global.INT_TYPE_ID);
+        SymbolTable.getInstance().set(new IDInfo(new Token("x", TokenType.ID), scope, type, true));
+        String programStr = "x = x + 1;\n".repeat(1000);
+        // The statement parser stops within CHECK_INTERVAL statements once the token is cancelled
+        StatementParser statementParser = new StatementParser(new ExpressionParser(TokenStream.lex(programStr)));
+        CancellationToken cancellationToken = CancellationToken.create();
+        statementParser.setCancellationToken(cancellationToken);
+        Iterator<Node> statements = statementParser.parseProgram(scope);
+        statements.next();
+        cancellationToken.cancel();
+        int[] numParsed = new int[1];
+        CancellationError cancellationError = assertThrows(CancellationError.class, () -> {
+            while (statements.hasNext()) {
+                statements.next();
+                ++numParsed[0];
+            }
+        });
+        assertTrue(numParsed[0] < CancellationToken.CHECK_INTERVAL);
+        assertFalse(cancellationError.isDeadlineExceeded());
+        assertEquals(0, cancellationError.getStackTrace().length);
+
+        // The lexer and the expression parser stop within a long expression once the deadline has passed
+        String exprStr = "x" + " + x".repeat(1000);
+        Lexer lexer = new Lexer(exprStr);
+        lexer.setCancellationToken(CancellationToken.withTimeout(Duration.ZERO));
+        cancellationError = assertThrows(CancellationError.class, () ->
+                new ExpressionParser(lexer).parseExpression(scope));
+        assertTrue(cancellationError.isDeadlineExceeded());
+        ExpressionParser exprParser = new ExpressionParser(TokenStream.lex(exprStr));
+        exprParser.setCancellationToken(CancellationToken.withTimeout(Duration.ZERO));
+        assertThrows(CancellationError.class, () -> exprParser.parseExpression(scope));
+
+        // The traversal stops within CHECK_INTERVAL nodes
+        Node exprRoot = new ExpressionParser(TokenStream.lex(exprStr)).parseExpression(scope);
+        int[] numVisits = new int[1];
+        ASTTraversal traversal = new ASTTraversal(new IASTNodeVisitor() {
+            @Override
+            public void visit(Node node) {
+                ++numVisits[0];
+            }
+
+            @Override
+            public void backtrack(Node node) {
+            }
+        });
+        traversal.setCancellationToken(cancellationToken);
+        assertThrows(CancellationError.class, () -> traversal.traverse(exprRoot));
+        assertEquals(CancellationToken.CHECK_INTERVAL, numVisits[0]);
+
+        // The lexers and the parsers of the whole-program entry points check the token
+        CancellationToken expiredToken = CancellationToken.withTimeout(Duration.ZERO);
+        assertThrows(CancellationError.class, () -> TokenStream.lex(programStr, expiredToken));
+        assertThrows(CancellationError.class, () -> TokenStream.lex(new BufferedReader(new StringReader(programStr)),
+                expiredToken));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertThrows(CancellationError.class, () -> TokenStream.lexParallel(programStr, pool, expiredToken));
+            TokenStream tokenStream = TokenStream.lex(programStr);
+            assertThrows(CancellationError.class, () ->
+                    StatementParser.parseProgramParallel(tokenStream, scope, pool, 16, expiredToken));
+        } finally {
+            pool.shutdown();
+        }
+
+        // Without a token, nothing is cancelled
+        assertEquals(1000, new StatementParser(new ExpressionParser(TokenStream.lex(programStr)))
+                .streamProgram(scope).count());
+        assertThrows(IllegalStateException.class, CancellationToken.NONE::cancel);
+        assertFalse(CancellationToken.NONE.isCancelled());
+    }
+}
\ No newline at end of file
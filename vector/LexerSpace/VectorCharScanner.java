@@ -0,0 +1,80 @@
+package LexerSpace;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A scanner that checks as many characters at a time as the widest vector of the machine holds. Only ASCII
+ * characters are recognized by the vector comparisons, the scan continues one character at a time from the first
+ * character that is not recognized so that other characters are classified exactly as by the scalar scanner.
+ * <p>
+ * This class is kept out of the src tree since compiling it requires the jdk.incubator.vector module, which javac does
+ * not resolve by default. It is optional: once src is compiled into an output directory, vector/build.sh compiles it
+ * on its own against the classes of src, into the same output directory, with
+ * <pre>
+ * vector/build.sh out
+ * </pre>
+ * and CharScanner only loads it when the module is enabled at run time with --add-modules jdk.incubator.vector. If the
+ * class or the module is missing, the scalar scanner is used. LexerTest compares it with the scalar scanner when the
+ * tests run with the module.
+ */
+final class VectorCharScanner extends CharScanner {
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    /**
+     * Determines which lanes of a vector hold ASCII spaces, that is, the ASCII characters for which
+     * Character.isWhitespace is true: '\t' to '\r', 0x1C to 0x1F and ' '.
+     *
+     * @param v the characters.
+     * @return a mask of the lanes that hold spaces.
+     */
+    private static VectorMask<Short> isSpace(ShortVector v) {
+        return v.compare(VectorOperators.EQ, (short) ' ')
+                .or(v.compare(VectorOperators.GE, (short) '\t').and(v.compare(VectorOperators.LE, (short) '\r')))
+                .or(v.compare(VectorOperators.GE, (short) 0x1C).and(v.compare(VectorOperators.LE, (short) 0x1F)));
+    }
+
+    /**
+     * Determines which lanes of a vector hold ASCII letters, digits or '_'.
+     *
+     * @param v the characters.
+     * @return a mask of the lanes that hold identifier characters.
+     */
+    private static VectorMask<Short> isIdentifierPart(ShortVector v) {
+        // Setting bit 5 maps the upper case letters to the lower case letters and no other character to a letter
+        ShortVector lower = v.or((short) 0x20);
+        return lower.compare(VectorOperators.GE, (short) 'a').and(lower.compare(VectorOperators.LE, (short) 'z'))
+                .or(v.compare(VectorOperators.GE, (short) '0').and(v.compare(VectorOperators.LE, (short) '9')))
+                .or(v.compare(VectorOperators.EQ, (short) '_'));
+    }
+
+    @Override
+    public int skipSpaces(char[] chars, int from, int to) {
+        int bound = from + SPECIES.loopBound(to - from);
+        while (from < bound) {
+            VectorMask<Short> mask = isSpace(ShortVector.fromCharArray(SPECIES, chars, from));
+            if (!mask.allTrue()) {
+                from += mask.not().firstTrue();
+                break;
+            }
+            from += SPECIES.length();
+        }
+        return super.skipSpaces(chars, from, to);
+    }
+
+    @Override
+    public int skipIdentifierPart(char[] chars, int from, int to) {
+        int bound = from + SPECIES.loopBound(to - from);
+        while (from < bound) {
+            VectorMask<Short> mask = isIdentifierPart(ShortVector.fromCharArray(SPECIES, chars, from));
+            if (!mask.allTrue()) {
+                from += mask.not().firstTrue();
+                break;
+            }
+            from += SPECIES.length();
+        }
+        return super.skipIdentifierPart(chars, from, to);
+    }
+}
@@ -0,0 +1,8 @@
+#!/bin/sh
+# Compiles the optional vector scanner against the classes of src, into the same output directory, so that it is
+# loaded when the program or the tests run with --add-modules jdk.incubator.vector.
+#
+# Usage: vector/build.sh <output directory of the src classes>
+set -e
+out="${1:?Usage: vector/build.sh <output directory of the src classes>}"
+javac --add-modules jdk.incubator.vector -cp "$out" -d "$out" "$(dirname "$0")/LexerSpace/VectorCharScanner.java"